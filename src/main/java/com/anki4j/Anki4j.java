@@ -6,20 +6,30 @@ import com.anki4j.model.Card;
 import com.anki4j.model.Deck;
 import com.anki4j.model.Model;
 import com.anki4j.model.Note;
+import com.anki4j.model.NoteFieldsMap;
 import com.anki4j.model.Grave;
 import com.anki4j.model.Revlog;
 import com.anki4j.renderer.RenderedCard;
+import com.anki4j.sched.StudyQueues;
+import com.anki4j.stats.CollectionStats;
+import com.anki4j.stats.RevlogSnapshot;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipFile;
 
 public final class Anki4j implements AnkiCollection {
 
@@ -40,15 +50,41 @@ public final class Anki4j implements AnkiCollection {
     private final RevlogRepository revlogRepository;
     private final GraveRepository graveRepository;
     private final ColRepository colRepository;
+    private final StatsRepository statsRepository;
+    private final StudyQueueService studyQueueService;
+    private final IndexManager indexManager;
+    private final IdAllocator idAllocator;
 
-    private boolean dirty = false;
+    // Read queries run on the writer's repositories unless a read pool is open
+    private final ReadContext writerContext;
+    private ReadPool readPool;
+
+    // Serializes everything that uses the writer connection in concurrent mode
+    private final ReentrantLock writeLock;
+
+    private volatile boolean dirty = false;
+
+    // Fetch size hint for streaming cursors, 0 for the driver default
+    private int fetchSize = 0;
+
+    // Whether indexes created by this session are dropped from exported copies
+    private boolean dropIndexesOnExport = false;
+
+    // Explicit transaction in progress, if any, and the dirty flag from before it
+    private AnkiTransaction transaction;
+    private boolean dirtyBeforeTransaction;
+
+    // Temporary files backing this session, deleted on close
+    private final List<java.nio.file.Path> ownedFiles = new java.util.ArrayList<>();
 
     private Anki4j(java.nio.file.Path originalPath, java.sql.Connection connection,
             DeckRepository deckRepository, CardRepository cardRepository,
             NoteRepository noteRepository, ModelService modelService,
             MediaManager mediaManager, RenderService renderService,
             AnkiWriter ankiWriter, RevlogRepository revlogRepository,
-            GraveRepository graveRepository, ColRepository colRepository) {
+            GraveRepository graveRepository, ColRepository colRepository,
+            StatsRepository statsRepository, StudyQueueService studyQueueService,
+            IndexManager indexManager, IdAllocator idAllocator, ReentrantLock writeLock) {
         logger.info("Initializing Anki4j instance");
         this.originalPath = originalPath;
         this.connection = connection;
@@ -62,55 +98,187 @@ public final class Anki4j implements AnkiCollection {
         this.revlogRepository = revlogRepository;
         this.graveRepository = graveRepository;
         this.colRepository = colRepository;
+        this.statsRepository = statsRepository;
+        this.studyQueueService = studyQueueService;
+        this.indexManager = indexManager;
+        this.idAllocator = idAllocator;
+        this.writeLock = writeLock;
+        this.writerContext = new ReadContext(cardRepository, noteRepository, revlogRepository, graveRepository,
+                statsRepository, studyQueueService, renderService);
     }
 
     public static Anki4j read(String path) {
+        return read(path, OpenOptions.defaults());
+    }
+
+    public static Anki4j read(String path, OpenOptions options) {
         logger.info("Opening Anki file from path: {}", path);
         java.nio.file.Path apkgPath = java.nio.file.Paths.get(path);
-        try {
-            byte[] data = java.nio.file.Files.readAllBytes(apkgPath);
-            Anki4j instance = read(data);
-            return new Anki4j(apkgPath, instance.connection,
-                    instance.deckRepository, instance.cardRepository, instance.noteRepository,
-                    instance.modelService, instance.mediaManager, instance.renderService,
-                    instance.ankiWriter, instance.revlogRepository, instance.graveRepository,
-                    instance.colRepository);
-        } catch (IOException e) {
-            throw new AnkiException("Failed to read Anki file from path: " + path, e);
+        if (!java.nio.file.Files.isRegularFile(apkgPath)) {
+            throw new AnkiException("Failed to read Anki file from path: " + path,
+                    new java.nio.file.NoSuchFileException(path));
         }
+        return open(apkgPath, apkgPath, options);
     }
 
     public static Anki4j read(java.io.InputStream inputStream) {
+        return read(inputStream, OpenOptions.defaults());
+    }
+
+    public static Anki4j read(java.io.InputStream inputStream, OpenOptions options) {
         try {
-            return read(inputStream.readAllBytes());
+            return readSpooled(tempFile -> java.nio.file.Files.copy(inputStream, tempFile,
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING), options);
         } catch (IOException e) {
             throw new AnkiException("Failed to read Anki data from InputStream", e);
         }
     }
 
-    // ... (existing helper methods)
-
     public static Anki4j read(byte[] data) {
+        return read(data, OpenOptions.defaults());
+    }
+
+    public static Anki4j read(byte[] data, OpenOptions options) {
         logger.info("Opening Anki collection from bytes (length: {})", data.length);
+        try {
+            return readSpooled(tempFile -> java.nio.file.Files.write(tempFile, data), options);
+        } catch (IOException e) {
+            throw new AnkiException("Failed to initialize Anki4j from bytes", e);
+        }
+    }
+
+    private interface Spooler {
+        void spool(java.nio.file.Path tempFile) throws IOException;
+    }
+
+    /**
+     * Spools an in-memory or streamed package to a temporary file so it can be
+     * opened through {@link ZipFile}'s central directory like any other APKG.
+     * With lazy media the file backs the open archive and lives until
+     * {@link #close()}.
+     */
+    private static Anki4j readSpooled(Spooler spooler, OpenOptions options) throws IOException {
+        java.nio.file.Path tempFile = java.nio.file.Files.createTempFile("anki4j_pkg", ".apkg");
+        boolean keepFile = false;
+        try {
+            spooler.spool(tempFile);
+            Anki4j instance = open(tempFile, null, options);
+            if (options.isLazyMedia()) {
+                instance.ownedFiles.add(tempFile);
+                keepFile = true;
+            }
+            return instance;
+        } finally {
+            if (!keepFile) {
+                java.nio.file.Files.deleteIfExists(tempFile);
+            }
+        }
+    }
 
+    private static Anki4j open(java.nio.file.Path packagePath, java.nio.file.Path originalPath,
+            OpenOptions options) {
+        java.sql.Connection conn = null;
+        ZipFile zipFile = null;
+        java.nio.file.Path dbFile = null;
+        MediaManager mediaManager = new MediaManager();
         try {
-            // 1. Extract database from bytes
-            byte[] dbBytes = DatabaseManager.extractDatabaseBytes(data);
-            if (dbBytes == null) {
+            zipFile = new ZipFile(packagePath.toFile());
+
+            // 1. Locate the database by name in the central directory
+            ZipEntry dbEntry = DatabaseManager.findDatabaseEntry(zipFile);
+            if (dbEntry == null) {
                 throw new AnkiException("Invalid Anki package: collection.anki2 or collection.anki21 not found");
             }
 
-            // 2. Connect to in-memory SQLite and load data
-            java.sql.Connection conn = java.sql.DriverManager.getConnection("jdbc:sqlite::memory:");
-            DatabaseManager.restore(conn, dbBytes);
+            // 2. Either open the extracted file in place or restore it into memory
+            try (java.io.InputStream dbStream = zipFile.getInputStream(dbEntry)) {
+                if (options.isFileBackedDatabase() || options.isConcurrent()) {
+                    dbFile = DatabaseManager.extractToFile(dbStream, options.getWorkDirectory());
+                    conn = java.sql.DriverManager.getConnection("jdbc:sqlite:" + dbFile.toAbsolutePath());
+                } else {
+                    conn = java.sql.DriverManager.getConnection("jdbc:sqlite::memory:");
+                    DatabaseManager.restore(conn, dbStream);
+                }
+            }
+            DatabaseManager.configure(conn, options.getMmapSize(), options.getCacheSizeKib());
+
+            // 3. Load the media index (the archive stays open in lazy mode)
+            if (options.isLazyMedia()) {
+                mediaManager.loadLazily(zipFile, options.getMediaCacheBytes());
+                zipFile = null;
+            } else {
+                mediaManager.load(zipFile);
+            }
 
-            return initializeFromConnection(conn, data);
+            Anki4j instance = initializeFromConnection(conn, mediaManager, originalPath);
+            if (dbFile != null) {
+                instance.ownedFiles.add(dbFile);
+            }
+            instance.fetchSize = options.getFetchSize();
+            instance.dropIndexesOnExport = options.isDropIndexesOnExport();
+            if (options.isCreateIndexes()) {
+                instance.indexManager.createStandardIndexes();
+            }
+            if (options.isConcurrent()) {
+                instance.openReadPool(dbFile, options);
+            }
+            return instance;
 
         } catch (Exception e) {
+            closeQuietly(conn);
+            mediaManager.close();
+            deleteQuietly(dbFile);
             if (e instanceof AnkiException) {
                 throw (AnkiException) e;
             }
-            throw new AnkiException("Failed to initialize Anki4j from bytes", e);
+            if (e instanceof java.util.zip.ZipException) {
+                throw new AnkiException("Invalid APKG file format: Not a valid zip archive", e);
+            }
+            throw new AnkiException("Failed to initialize Anki4j from " + packagePath, e);
+        } finally {
+            if (zipFile != null) {
+                try {
+                    zipFile.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close package {}: {}", packagePath, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Switches the database to WAL mode, in which readers and the writer do not
+     * block each other, and opens the read-only connections.
+     */
+    private void openReadPool(java.nio.file.Path dbFile, OpenOptions options) throws java.sql.SQLException {
+        try (java.sql.Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+        }
+        // Read connections cannot create the index on first use
+        indexManager.ensureSchedulingIndex();
+        readPool = new ReadPool(dbFile, options.getReadConnections(), options.getMmapSize(),
+                options.getCacheSizeKib(), deckRepository, modelService, indexManager, renderService.getRenderer());
+    }
+
+    private static void deleteQuietly(java.nio.file.Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            java.nio.file.Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete temporary file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(java.sql.Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.close();
+        } catch (java.sql.SQLException e) {
+            logger.warn("Failed to close database connection: {}", e.getMessage());
         }
     }
 
@@ -120,33 +288,92 @@ public final class Anki4j implements AnkiCollection {
             java.sql.Connection conn = java.sql.DriverManager.getConnection("jdbc:sqlite::memory:");
             DatabaseManager.initializeSchema(conn);
 
-            return initializeFromConnection(conn, null);
+            return initializeFromConnection(conn, new MediaManager(), null);
         } catch (Exception e) {
             throw new AnkiException("Failed to create new Anki collection", e);
         }
     }
 
-    private static Anki4j initializeFromConnection(java.sql.Connection conn, byte[] data) throws IOException {
+    private static Anki4j initializeFromConnection(java.sql.Connection conn, MediaManager mediaManager,
+            java.nio.file.Path originalPath) {
         logger.info("Initializing services from connection");
-        MediaManager mediaManager = new MediaManager();
-        if (data != null) {
-            mediaManager.load(data);
-        }
 
         CardRepository cardRepository = new CardRepository(conn);
         NoteRepository noteRepository = new NoteRepository(conn, cardRepository);
         DeckRepository deckRepository = new DeckRepository(conn);
         ModelService modelService = new ModelService(conn);
-        RenderService renderService = new RenderService(noteRepository, modelService);
-        AnkiWriter ankiWriter = new AnkiWriter(conn);
+        RenderService renderService = new RenderService(cardRepository, noteRepository, modelService);
+        AnkiWriter ankiWriter = new AnkiWriter(conn, modelService);
         RevlogRepository revlogRepository = new RevlogRepository(conn);
         GraveRepository graveRepository = new GraveRepository(conn);
         ColRepository colRepository = new ColRepository(conn);
-
-        return new Anki4j(null, conn,
+        StatsRepository statsRepository = new StatsRepository(conn, deckRepository);
+        IndexManager indexManager = new IndexManager(conn);
+        StudyQueueService studyQueueService = new StudyQueueService(conn, deckRepository, cardRepository,
+                indexManager);
+        ReentrantLock writeLock = new ReentrantLock();
+        IdAllocator idAllocator = new IdAllocator(conn, writeLock);
+
+        return new Anki4j(originalPath, conn,
                 deckRepository, cardRepository, noteRepository,
                 modelService, mediaManager, renderService, ankiWriter,
-                revlogRepository, graveRepository, colRepository);
+                revlogRepository, graveRepository, colRepository, statsRepository,
+                studyQueueService, indexManager, idAllocator, writeLock);
+    }
+
+    // ==================== Concurrency ====================
+
+    /**
+     * Runs a query on a pooled read connection, or on the writer connection when
+     * there is no pool or the calling thread is writing, so that it sees its own
+     * uncommitted changes.
+     */
+    private <T> T read(Function<ReadContext, T> query) {
+        if (readPool == null || writeLock.isHeldByCurrentThread()) {
+            return query.apply(writerContext);
+        }
+        return readPool.read(query);
+    }
+
+    private void readAll(Consumer<ReadContext> scan) {
+        read(context -> {
+            scan.accept(context);
+            return null;
+        });
+    }
+
+    private <T> Stream<T> readStream(Function<ReadContext, Stream<T>> query) {
+        if (readPool == null || writeLock.isHeldByCurrentThread()) {
+            return query.apply(writerContext);
+        }
+        return readPool.stream(query);
+    }
+
+    private <T> T write(Supplier<T> work) {
+        writeLock.lock();
+        try {
+            return work.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(Runnable work) {
+        writeLock.lock();
+        try {
+            work.run();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes saved notes before a query that reads notes from the database.
+     */
+    private void flushSavedNotes() {
+        if (ankiWriter.hasPending()) {
+            write(ankiWriter::flush);
+        }
     }
 
     // ==================== Delegated Methods ====================
@@ -161,35 +388,76 @@ public final class Anki4j implements AnkiCollection {
         return deckRepository.getDeck(deckId);
     }
 
+    @Override
+    public Optional<Deck> getDeckByName(String name) {
+        return deckRepository.getDeckByName(name);
+    }
+
+    @Override
+    public List<Deck> getChildDecks(long deckId) {
+        return deckRepository.getChildren(deckId);
+    }
+
+    @Override
+    public long[] getDescendantDeckIds(long deckId) {
+        return deckRepository.getDescendantIds(deckId);
+    }
+
+    @Override
+    public Map<Long, Long> getDeckCardCounts() {
+        Map<Long, Long> directCounts = read(context -> context.getCardRepository().countCardsByDeck());
+        return deckRepository.getSubtreeCardCounts(directCounts);
+    }
+
     @Override
     public List<Card> getCards() {
-        return cardRepository.getCards();
+        return read(context -> context.getCardRepository().getCards());
     }
 
     @Override
     public List<Card> getCards(long deckId) {
         logger.debug("Fetching cards for deck ID: {}", deckId);
-        return cardRepository.getCards(deckId);
+        return read(context -> context.getCardRepository().getCards(deckId));
     }
 
     @Override
     public Optional<Card> getCard(long cardId) {
-        return cardRepository.getCard(cardId);
+        return read(context -> context.getCardRepository().getCard(cardId));
+    }
+
+    @Override
+    public List<Card> getCardsByIds(long... cardIds) {
+        return read(context -> context.getCardRepository().getCardsByIds(cardIds));
     }
 
     @Override
     public Optional<Note> getNote(long noteId) {
-        return noteRepository.getNote(noteId);
+        // Saved notes waiting for a flush are newer than their rows
+        Optional<Note> pending = ankiWriter.getPending(noteId);
+        return pending.isPresent() ? pending : read(context -> context.getNoteRepository().getNote(noteId));
     }
 
     @Override
     public List<Note> getNotes() {
-        return noteRepository.getNotes();
+        flushSavedNotes();
+        return read(context -> context.getNoteRepository().getNotes());
     }
 
     @Override
     public Optional<Note> getNoteFromCard(long cardId) {
-        return noteRepository.getNoteFromCard(cardId);
+        return getCard(cardId).flatMap(card -> getNote(card.getNid()));
+    }
+
+    @Override
+    public List<Note> getNotesByIds(long... noteIds) {
+        flushSavedNotes();
+        return read(context -> context.getNoteRepository().getNotesByIds(noteIds));
+    }
+
+    @Override
+    public List<Note> getNotesForCards(long... cardIds) {
+        flushSavedNotes();
+        return read(context -> context.getNoteRepository().getNotesForCards(cardIds));
     }
 
     @Override
@@ -209,92 +477,374 @@ public final class Anki4j implements AnkiCollection {
 
     @Override
     public Optional<RenderedCard> renderCard(Card card) {
-        return renderService.renderCard(card);
+        flushSavedNotes();
+        return read(context -> context.getRenderService().renderCard(card));
+    }
+
+    @Override
+    public Map<Long, RenderedCard> renderCards(List<Card> cards) {
+        flushSavedNotes();
+        return read(context -> context.getRenderService().renderCards(cards));
+    }
+
+    @Override
+    public Map<Long, RenderedCard> renderDeck(long deckId) {
+        flushSavedNotes();
+        return read(context -> context.getRenderService().renderDeck(deckId));
     }
 
     @Override
     public List<Revlog> getRevlogs() {
-        return revlogRepository.getAllRevlogs();
+        return read(context -> context.getRevlogRepository().getAllRevlogs());
     }
 
     @Override
     public Optional<Revlog> getRevlog(long id) {
-        return revlogRepository.getRevlog(id);
+        return read(context -> context.getRevlogRepository().getRevlog(id));
+    }
+
+    @Override
+    public RevlogSnapshot getRevlogSnapshot() {
+        return read(context -> context.getRevlogRepository().loadSnapshot(fetchSize));
+    }
+
+    @Override
+    public StudyQueues getStudyQueues(long deckId) {
+        return getStudyQueues(deckId, StudyQueues.DEFAULT_NEW_LIMIT, StudyQueues.DEFAULT_REVIEW_LIMIT);
+    }
+
+    @Override
+    public StudyQueues getStudyQueues(long deckId, int newLimit, int reviewLimit) {
+        return read(context -> context.getStudyQueueService().getStudyQueues(deckId, newLimit, reviewLimit));
+    }
+
+    @Override
+    public CollectionStats getStats() {
+        return getStats(-1, CollectionStats.DEFAULT_DAYS);
+    }
+
+    @Override
+    public CollectionStats getStats(long deckId, int days) {
+        return read(context -> context.getStatsRepository().getStats(deckId, days));
+    }
+
+    @Override
+    public Map<Long, CollectionStats> getStatsByDeck(int days) {
+        return read(context -> context.getStatsRepository().getStatsByDeck(days));
     }
 
     @Override
     public List<Grave> getGraves() {
-        return graveRepository.getAllGraves();
+        return read(context -> context.getGraveRepository().getAllGraves());
     }
 
     @Override
     public Optional<Grave> getGraveByOid(long oid) {
-        return graveRepository.getGraveByOid(oid);
+        return read(context -> context.getGraveRepository().getGraveByOid(oid));
     }
 
     @Override
     public Optional<com.anki4j.model.Col> getCol() {
-        return colRepository.getCol();
+        return write(() -> {
+            deckRepository.flush();
+            return colRepository.getCol();
+        });
+    }
+
+    // ==================== Streaming ====================
+
+    @Override
+    public Stream<Card> streamCards() {
+        return readStream(context -> context.getCardRepository().streamCards(-1, fetchSize));
+    }
+
+    @Override
+    public Stream<Card> streamCards(long deckId) {
+        return readStream(context -> context.getCardRepository().streamCards(deckId, fetchSize));
+    }
+
+    @Override
+    public Stream<Note> streamNotes() {
+        flushSavedNotes();
+        return readStream(context -> context.getNoteRepository().streamNotes(-1, fetchSize));
+    }
+
+    @Override
+    public Stream<Note> streamNotes(long modelId) {
+        flushSavedNotes();
+        return readStream(context -> context.getNoteRepository().streamNotes(modelId, fetchSize));
+    }
+
+    @Override
+    public Stream<Revlog> streamRevlogs() {
+        return streamRevlogs(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Revlog> streamRevlogs(long startMillis, long endMillis) {
+        return readStream(context -> context.getRevlogRepository().streamRevlogs(startMillis, endMillis, fetchSize));
+    }
+
+    @Override
+    public void forEachCard(Consumer<Card> action) {
+        try (Stream<Card> cards = streamCards()) {
+            cards.forEach(action);
+        }
+    }
+
+    @Override
+    public void forEachNote(Consumer<Note> action) {
+        try (Stream<Note> notes = streamNotes()) {
+            notes.forEach(action);
+        }
+    }
+
+    @Override
+    public void forEachRevlog(Consumer<Revlog> action) {
+        try (Stream<Revlog> revlogs = streamRevlogs()) {
+            revlogs.forEach(action);
+        }
+    }
+
+    @Override
+    public void scanCards(Consumer<? super Card> action) {
+        scanCards(-1, action);
+    }
+
+    @Override
+    public void scanCards(long deckId, Consumer<? super Card> action) {
+        readAll(context -> context.getCardRepository().scanCards(deckId, fetchSize, action));
+    }
+
+    @Override
+    public void scanNotes(Consumer<? super Note> action) {
+        flushSavedNotes();
+        readAll(context -> context.getNoteRepository().scanNotes(-1, fetchSize, action));
+    }
+
+    @Override
+    public void scanRevlogs(Consumer<? super Revlog> action) {
+        scanRevlogs(Long.MIN_VALUE, Long.MAX_VALUE, action);
+    }
+
+    @Override
+    public void scanRevlogs(long startMillis, long endMillis, Consumer<? super Revlog> action) {
+        readAll(context -> context.getRevlogRepository().scanRevlogs(startMillis, endMillis, fetchSize, action));
     }
 
     @Override
     public void save(Note note) {
-        logger.info("Saving note ID: {}", note.getId());
-        ankiWriter.save(note);
+        logger.debug("Saving note ID: {}", note.getId());
+        // Waits for another thread's transaction, whose rollback discards pending saves
+        write(() -> ankiWriter.save(note));
         this.dirty = true;
     }
 
+    @Override
+    public void save(Note note, NoteFieldsMap fields) {
+        if (fields.isDirty()) {
+            note.setFlds(fields.toRawString());
+            fields.resetDirty();
+        }
+        save(note);
+    }
+
+    @Override
+    public void flush() {
+        write(() -> {
+            ankiWriter.flush();
+            deckRepository.flush();
+        });
+    }
+
     @Override
     public void addDeck(Deck deck) {
         logger.info("Adding deck: {}", deck.getName());
-        deckRepository.addDeck(deck);
+        write(() -> deckRepository.addDeck(deck));
         this.dirty = true;
     }
 
     @Override
     public void addModel(Model model) {
         logger.info("Adding model: {}", model.getName());
-        modelService.addModel(model);
+        write(() -> modelService.addModel(model));
         this.dirty = true;
     }
 
     @Override
     public void addNote(Note note) {
         logger.info("Adding note: {}", note.getId());
-        noteRepository.addNote(note);
+        write(() -> noteRepository.addNote(note));
         this.dirty = true;
     }
 
     @Override
     public void addCard(Card card) {
         logger.info("Adding card: {}", card.getId());
-        cardRepository.addCard(card);
+        write(() -> cardRepository.addCard(card));
+        this.dirty = true;
+    }
+
+    @Override
+    public void addNotes(Collection<Note> notes) {
+        logger.info("Adding {} notes", notes.size());
+        write(() -> noteRepository.addNotes(notes, BulkImporter.DEFAULT_BATCH_SIZE));
+        this.dirty = true;
+    }
+
+    @Override
+    public void addCards(Collection<Card> cards) {
+        logger.info("Adding {} cards", cards.size());
+        write(() -> cardRepository.addCards(cards, BulkImporter.DEFAULT_BATCH_SIZE));
         this.dirty = true;
     }
 
+    @Override
+    public NoteBuilder noteBuilder(Model model, long deckId) {
+        return new NoteBuilder(model, deckId, idAllocator, renderService, this::bulkImporter);
+    }
+
+    @Override
+    public BulkImporter bulkImporter() {
+        return new BulkImporter(connection, writeLock, () -> this.dirty = true);
+    }
+
     @Override
     public void addMedia(String filename, byte[] content) {
         logger.info("Adding media: {}", filename);
-        mediaManager.addMedia(filename, content);
+        write(() -> mediaManager.addMedia(filename, content));
         this.dirty = true;
     }
 
+    // ==================== Transactions ====================
+
+    @Override
+    public AnkiTransaction beginTransaction() {
+        // Waits for a transaction on another thread; held until commit or rollback
+        writeLock.lock();
+        if (transaction != null) {
+            writeLock.unlock();
+            throw new IllegalStateException("A transaction is already active");
+        }
+        try {
+            // Earlier saves belong before the transaction, not to it
+            flush();
+            connection.setAutoCommit(false);
+        } catch (java.sql.SQLException e) {
+            writeLock.unlock();
+            throw new AnkiException("Failed to begin transaction", e);
+        } catch (RuntimeException e) {
+            writeLock.unlock();
+            throw e;
+        }
+        logger.info("Began transaction");
+        dirtyBeforeTransaction = dirty;
+        mediaManager.beginChanges();
+        transaction = new AnkiTransaction(this);
+        return transaction;
+    }
+
+    @Override
+    public void inTransaction(Consumer<AnkiCollection> work) {
+        try (AnkiTransaction tx = beginTransaction()) {
+            work.accept(this);
+            tx.commit();
+        }
+    }
+
+    void commitTransaction() {
+        flush();
+        try {
+            connection.commit();
+            connection.setAutoCommit(true);
+        } catch (java.sql.SQLException e) {
+            logger.error("Failed to commit transaction: {}", e.getMessage());
+            throw new AnkiException("Failed to commit transaction", e);
+        }
+        mediaManager.commitChanges();
+        transaction = null;
+        writeLock.unlock();
+        logger.info("Committed transaction");
+    }
+
+    void rollbackTransaction() {
+        transaction = null;
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (java.sql.SQLException e) {
+            logger.error("Failed to roll back transaction: {}", e.getMessage());
+            throw new AnkiException("Failed to roll back transaction", e);
+        } finally {
+            // Cached state may hold changes the database no longer has
+            ankiWriter.discard();
+            mediaManager.rollbackChanges();
+            deckRepository.reload();
+            modelService.reload();
+            dirty = dirtyBeforeTransaction;
+            writeLock.unlock();
+        }
+        logger.info("Rolled back transaction");
+    }
+
     // ==================== Resource Management ====================
 
+    private ApkgExporter newExporter(ExportOptions options) {
+        // Saved notes and cached JSON must reach the database before it is copied
+        flush();
+        List<String> indexesToDrop = dropIndexesOnExport ? indexManager.getCreatedIndexes() : List.of();
+        return new ApkgExporter(connection, mediaManager, options, indexesToDrop);
+    }
+
     @Override
     public void close() {
         logger.info("Closing Anki4j session");
+        writeLock.lock();
+        try {
+            closeLocked();
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-        if (dirty && originalPath != null) {
-            try {
-                byte[] updated = export();
-                java.nio.file.Files.write(originalPath, updated);
-                logger.info("Updated original APKG file: {}", originalPath);
-            } catch (IOException e) {
-                logger.error("Failed to persist changes to APKG file: {}", e.getMessage());
-                throw new AnkiException("Failed to persist changes back to " + originalPath, e);
+    private void closeLocked() {
+        try {
+            if (transaction != null) {
+                logger.warn("Closing with an open transaction, rolling it back");
+                transaction.rollback();
             }
+
+            if (dirty && originalPath != null) {
+                try {
+                    export(originalPath);
+                    logger.info("Updated original APKG file: {}", originalPath);
+                } catch (AnkiException e) {
+                    logger.error("Failed to persist changes to APKG file: {}", e.getMessage());
+                    throw new AnkiException("Failed to persist changes back to " + originalPath, e);
+                }
+            }
+        } finally {
+            // Resources are released even when the final write fails
+            releaseResources();
         }
+    }
+
+    private void releaseResources() {
+        mediaManager.close();
+
+        // Readers go first so that the writer, as the last connection, checkpoints the WAL
+        if (readPool != null) {
+            readPool.close();
+            readPool = null;
+        }
+
+        // Cached statements must be released before the connection closes
+        cardRepository.close();
+        noteRepository.close();
+        revlogRepository.close();
+        graveRepository.close();
+        statsRepository.close();
+        ankiWriter.close();
 
         try {
             if (connection != null && !connection.isClosed()) {
@@ -304,44 +854,78 @@ public final class Anki4j implements AnkiCollection {
         } catch (java.sql.SQLException e) {
             logger.error("Failed to close database connection: {}", e.getMessage());
         }
+
+        for (java.nio.file.Path file : ownedFiles) {
+            deleteQuietly(file);
+        }
+        ownedFiles.clear();
     }
 
     @Override
     public byte[] export() {
+        return export(ExportOptions.defaults());
+    }
+
+    @Override
+    public byte[] export(ExportOptions options) {
         logger.info("Exporting collection to APKG bytes");
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-            // 1. Save database to a temporary file and add to zip
-            byte[] dbBytes = DatabaseManager.backup(connection);
-            zos.putNextEntry(new ZipEntry("collection.anki21"));
-            zos.write(dbBytes);
-            zos.closeEntry();
-
-            // 2. Add media
-            Map<String, byte[]> mediaEntries = mediaManager.getAllMediaEntries();
-            for (Map.Entry<String, byte[]> entry : mediaEntries.entrySet()) {
-                zos.putNextEntry(new ZipEntry(entry.getKey()));
-                zos.write(entry.getValue());
-                zos.closeEntry();
-            }
+        export(baos, options);
+        return baos.toByteArray();
+    }
 
-            // 3. Add 'media' JSON
-            Map<String, String> filenameToZipName = mediaManager.getFilenameToZipName();
-            if (!filenameToZipName.isEmpty()) {
-                Map<String, String> reversedMediaMap = new java.util.HashMap<>();
-                for (Map.Entry<String, String> entry : filenameToZipName.entrySet()) {
-                    reversedMediaMap.put(entry.getValue(), entry.getKey());
-                }
-                byte[] mediaJson = new com.fasterxml.jackson.databind.ObjectMapper()
-                        .writeValueAsBytes(reversedMediaMap);
-                zos.putNextEntry(new ZipEntry("media"));
-                zos.write(mediaJson);
-                zos.closeEntry();
-            }
+    @Override
+    public void export(java.io.OutputStream outputStream) {
+        export(outputStream, ExportOptions.defaults());
+    }
 
+    @Override
+    public void export(java.io.OutputStream outputStream, ExportOptions options) {
+        logger.info("Exporting collection to APKG stream");
+        writeLock.lock();
+        try {
+            newExporter(options).export(outputStream);
         } catch (IOException e) {
             throw new AnkiException("Failed to export APKG", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void export(java.nio.file.Path target) {
+        export(target, ExportOptions.defaults());
+    }
+
+    @Override
+    public void export(java.nio.file.Path target, ExportOptions options) {
+        logger.info("Exporting collection to APKG file: {}", target);
+        java.nio.file.Path absoluteTarget = target.toAbsolutePath();
+        java.nio.file.Path tempFile = null;
+        try {
+            // Write next to the target so the final move stays on one file system
+            tempFile = java.nio.file.Files.createTempFile(absoluteTarget.getParent(), ".anki4j", ".apkg.tmp");
+            writeLock.lock();
+            try (java.io.OutputStream out = new java.io.BufferedOutputStream(
+                    java.nio.file.Files.newOutputStream(tempFile))) {
+                newExporter(options).export(out);
+            } finally {
+                writeLock.unlock();
+            }
+            try {
+                java.nio.file.Files.move(tempFile, absoluteTarget,
+                        java.nio.file.StandardCopyOption.ATOMIC_MOVE,
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+                logger.warn("Atomic move not supported for {}, replacing non-atomically", absoluteTarget);
+                java.nio.file.Files.move(tempFile, absoluteTarget,
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            throw new AnkiException("Failed to export APKG to " + target, e);
+        } finally {
+            deleteQuietly(tempFile);
         }
-        return baos.toByteArray();
     }
 }
@@ -2,9 +2,16 @@ package com.anki4j;
 
 import com.anki4j.model.*;
 import com.anki4j.renderer.RenderedCard;
+import com.anki4j.sched.StudyQueues;
+import com.anki4j.stats.CollectionStats;
+import com.anki4j.stats.RevlogSnapshot;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public sealed interface AnkiCollection extends AutoCloseable permits Anki4j {
 
@@ -20,24 +27,76 @@ public sealed interface AnkiCollection extends AutoCloseable permits Anki4j {
         return Anki4j.read(data);
     }
 
+    static AnkiCollection read(String path, OpenOptions options) {
+        return Anki4j.read(path, options);
+    }
+
+    static AnkiCollection read(java.io.InputStream inputStream, OpenOptions options) {
+        return Anki4j.read(inputStream, options);
+    }
+
+    static AnkiCollection read(byte[] data, OpenOptions options) {
+        return Anki4j.read(data, options);
+    }
+
     // --- Entity Getters ---
 
     List<Deck> getDecks();
 
     Optional<Deck> getDeck(long deckId);
 
+    /**
+     * Finds a deck by its full name, e.g. {@code "Languages::French"}, ignoring
+     * case.
+     */
+    Optional<Deck> getDeckByName(String name);
+
+    /**
+     * Returns the direct children of a deck in the {@code Parent::Child}
+     * hierarchy.
+     */
+    List<Deck> getChildDecks(long deckId);
+
+    /**
+     * Returns the IDs of all decks below a deck, excluding the deck itself.
+     */
+    long[] getDescendantDeckIds(long deckId);
+
+    /**
+     * Counts cards per deck, each count including the cards of descendant decks.
+     */
+    Map<Long, Long> getDeckCardCounts();
+
     List<Card> getCards();
 
     List<Card> getCards(long deckId);
 
     Optional<Card> getCard(long cardId);
 
+    /**
+     * Fetches many cards in bulk, in the order of {@code cardIds}. Unknown IDs are
+     * skipped.
+     */
+    List<Card> getCardsByIds(long... cardIds);
+
     List<Note> getNotes();
 
     Optional<Note> getNote(long noteId);
 
     Optional<Note> getNoteFromCard(long cardId);
 
+    /**
+     * Fetches many notes in bulk, in the order of {@code noteIds}. Unknown IDs are
+     * skipped.
+     */
+    List<Note> getNotesByIds(long... noteIds);
+
+    /**
+     * Fetches the note of each card in bulk, in the order of {@code cardIds}.
+     * Unknown cards are skipped.
+     */
+    List<Note> getNotesForCards(long... cardIds);
+
     List<Model> getModels();
 
     Optional<Model> getModel(long modelId);
@@ -46,20 +105,146 @@ public sealed interface AnkiCollection extends AutoCloseable permits Anki4j {
 
     Optional<Revlog> getRevlog(long id);
 
+    /**
+     * Loads the whole review log into a columnar snapshot for analytics. The
+     * snapshot is a copy and does not see later changes.
+     */
+    RevlogSnapshot getRevlogSnapshot();
+
+    // --- Scheduling ---
+
+    /**
+     * Returns the cards of a deck and its child decks that can be studied now,
+     * with the default limits of {@link StudyQueues#DEFAULT_NEW_LIMIT} new and
+     * {@link StudyQueues#DEFAULT_REVIEW_LIMIT} review cards.
+     */
+    StudyQueues getStudyQueues(long deckId);
+
+    /**
+     * Returns the cards of a deck and its child decks that can be studied now.
+     * A limit of -1 means no limit.
+     */
+    StudyQueues getStudyQueues(long deckId, int newLimit, int reviewLimit);
+
+    // --- Statistics ---
+
+    /**
+     * Computes statistics for the whole collection over the last
+     * {@link CollectionStats#DEFAULT_DAYS} days.
+     */
+    CollectionStats getStats();
+
+    /**
+     * Computes statistics for one deck and its child decks, with day-based
+     * series covering {@code days} days.
+     */
+    CollectionStats getStats(long deckId, int days);
+
+    /**
+     * Computes statistics for every deck that has cards, keyed by deck ID.
+     */
+    Map<Long, CollectionStats> getStatsByDeck(int days);
+
     List<Grave> getGraves();
 
     Optional<Grave> getGraveByOid(long oid);
 
     Optional<Col> getCol();
 
+    // --- Streaming ---
+    // Streams read lazily from a live cursor; close them (try-with-resources) when
+    // not consumed to the end.
+
+    Stream<Card> streamCards();
+
+    Stream<Card> streamCards(long deckId);
+
+    Stream<Note> streamNotes();
+
+    Stream<Note> streamNotes(long modelId);
+
+    Stream<Revlog> streamRevlogs();
+
+    /**
+     * Streams the reviews logged in {@code [startMillis, endMillis)}.
+     */
+    Stream<Revlog> streamRevlogs(long startMillis, long endMillis);
+
+    void forEachCard(Consumer<Card> action);
+
+    void forEachNote(Consumer<Note> action);
+
+    void forEachRevlog(Consumer<Revlog> action);
+
+    // --- Scans ---
+    // Scans hand the action one reused instance per table; it is overwritten by the
+    // next row, so copy what you need instead of keeping the object.
+
+    void scanCards(Consumer<? super Card> action);
+
+    void scanCards(long deckId, Consumer<? super Card> action);
+
+    void scanNotes(Consumer<? super Note> action);
+
+    void scanRevlogs(Consumer<? super Revlog> action);
+
+    void scanRevlogs(long startMillis, long endMillis, Consumer<? super Revlog> action);
+
     // --- Operations ---
 
+    /**
+     * Records an edited note. Saved notes are written together, in one batched
+     * transaction, by {@link #flush()}, {@code export} or {@code close}; until
+     * then {@link #getNote(long)} returns the saved version.
+     */
     void save(Note note);
 
+    /**
+     * Copies the modified values of {@code fields} into the note and saves it.
+     */
+    void save(Note note, NoteFieldsMap fields);
+
+    /**
+     * Writes saved notes and changed decks to the collection database.
+     */
+    void flush();
+
+    /**
+     * Starts a transaction covering every change until it is committed or
+     * rolled back. Closing it without committing rolls back.
+     * <p>
+     * In concurrent mode other threads keep reading committed rows, but they see
+     * decks, models and media added in the transaction before it commits, since
+     * those are cached in memory for all threads.
+     *
+     * @throws IllegalStateException if a transaction is already active
+     */
+    AnkiTransaction beginTransaction();
+
+    /**
+     * Runs {@code work} in a transaction that is committed if it returns
+     * normally and rolled back if it throws.
+     */
+    void inTransaction(Consumer<AnkiCollection> work);
+
     Optional<byte[]> getMediaContent(String filename);
 
     Optional<RenderedCard> renderCard(Card card);
 
+    /**
+     * Renders many cards, loading their notes in one batch.
+     *
+     * @return rendered cards keyed by card ID, in the order of {@code cards}
+     */
+    Map<Long, RenderedCard> renderCards(List<Card> cards);
+
+    /**
+     * Renders every card in a deck.
+     *
+     * @return rendered cards keyed by card ID
+     */
+    Map<Long, RenderedCard> renderDeck(long deckId);
+
     void addDeck(Deck deck);
 
     void addModel(Model model);
@@ -68,9 +253,49 @@ public sealed interface AnkiCollection extends AutoCloseable permits Anki4j {
 
     void addCard(Card card);
 
+    /**
+     * Inserts notes in JDBC batches within one transaction.
+     */
+    void addNotes(Collection<Note> notes);
+
+    /**
+     * Inserts cards in JDBC batches within one transaction.
+     */
+    void addCards(Collection<Card> cards);
+
+    /**
+     * Creates an importer for large numbers of notes and cards, with a
+     * configurable batch size and optional unjournaled writes.
+     */
+    BulkImporter bulkImporter();
+
+    /**
+     * Creates a builder that fills in IDs, sort field and checksum of new notes
+     * and generates their cards from the model's templates.
+     *
+     * @param deckId deck the generated cards are placed in
+     */
+    NoteBuilder noteBuilder(Model model, long deckId);
+
     void addMedia(String filename, byte[] content);
 
     byte[] export();
 
+    byte[] export(ExportOptions options);
+
+    /**
+     * Streams the collection as an APKG archive. The stream is not closed.
+     */
+    void export(java.io.OutputStream outputStream);
+
+    void export(java.io.OutputStream outputStream, ExportOptions options);
+
+    /**
+     * Writes the collection as an APKG file, replacing {@code target} atomically.
+     */
+    void export(java.nio.file.Path target);
+
+    void export(java.nio.file.Path target, ExportOptions options);
+
     void close();
 }
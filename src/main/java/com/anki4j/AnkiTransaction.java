@@ -0,0 +1,73 @@
+package com.anki4j;
+
+/**
+ * An explicit transaction on a collection, started with
+ * {@link AnkiCollection#beginTransaction()}.
+ * <p>
+ * Every change made through the collection until {@link #commit()} or
+ * {@link #rollback()} belongs to one SQLite transaction, so bulk edits cost a
+ * single journal sync and a failed import leaves the collection unchanged.
+ * Closing a transaction that was not committed rolls it back:
+ *
+ * <pre>
+ * try (AnkiTransaction tx = anki.beginTransaction()) {
+ *     anki.addDeck(deck);
+ *     anki.addNote(note);
+ *     tx.commit();
+ * }
+ * </pre>
+ *
+ * Only the thread that began a transaction may commit or roll it back.
+ */
+public final class AnkiTransaction implements AutoCloseable {
+
+    private final Anki4j collection;
+    private final Thread owner;
+    private boolean active = true;
+
+    AnkiTransaction(Anki4j collection) {
+        this.collection = collection;
+        this.owner = Thread.currentThread();
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Writes saved notes and changed decks, then commits.
+     */
+    public void commit() {
+        checkActive();
+        collection.commitTransaction();
+        active = false;
+    }
+
+    /**
+     * Undoes every change made in the transaction, including saved notes and
+     * added media that were not written yet, and reloads cached decks and
+     * models.
+     */
+    public void rollback() {
+        checkActive();
+        active = false;
+        collection.rollbackTransaction();
+    }
+
+    @Override
+    public void close() {
+        if (active) {
+            rollback();
+        }
+    }
+
+    private void checkActive() {
+        if (!active) {
+            throw new IllegalStateException("Transaction has already been committed or rolled back");
+        }
+        // The collection's write lock belongs to the thread that began the transaction
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("Transaction was begun by thread " + owner.getName());
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.anki4j;
+
+import com.anki4j.exception.AnkiException;
+import com.anki4j.internal.CardRepository;
+import com.anki4j.internal.NoteRepository;
+import com.anki4j.model.Card;
+import com.anki4j.model.Note;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Inserts many notes and cards in a single transaction using JDBC batches.
+ * <p>
+ * Obtain one from {@link AnkiCollection#bulkImporter()}, configure it, add rows
+ * and call {@link #execute()} to commit:
+ *
+ * <pre>
+ * try (BulkImporter importer = anki.bulkImporter().batchSize(10_000).fastWrites(true)) {
+ *     importer.addNotes(notes).addCards(cards).execute();
+ * }
+ * </pre>
+ *
+ * Closing an importer that was not executed rolls its rows back. With
+ * {@link #fastWrites(boolean)} SQLite keeps no rollback journal, so a failed
+ * import may leave the database partially written; use it only for collections
+ * that can be rebuilt. On a concurrent collection, which is in WAL mode, only
+ * {@code synchronous} is turned off.
+ * <p>
+ * From the first added row until it is executed or closed, the importer holds
+ * the collection's write lock.
+ */
+public final class BulkImporter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BulkImporter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 5000;
+
+    private final Connection connection;
+    private final Lock writeLock;
+    private final Runnable onWrite;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean fastWrites = false;
+
+    private PreparedStatement noteInsert;
+    private PreparedStatement cardInsert;
+    private int pendingNotes = 0;
+    private int pendingCards = 0;
+    private long rows = 0;
+    private long startedAt;
+
+    private boolean started = false;
+    private boolean ownsTransaction = false;
+    private boolean finished = false;
+    private String savedSynchronous;
+    private String savedJournalMode;
+
+    BulkImporter(Connection connection, Lock writeLock, Runnable onWrite) {
+        this.connection = connection;
+        this.writeLock = writeLock;
+        this.onWrite = onWrite;
+    }
+
+    /**
+     * Sets how many rows are sent to SQLite per {@code executeBatch} call.
+     */
+    public BulkImporter batchSize(int batchSize) {
+        checkNotStarted();
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Runs the import with {@code PRAGMA synchronous=OFF} and
+     * {@code journal_mode=OFF}, restoring the previous values afterwards.
+     */
+    public BulkImporter fastWrites(boolean fastWrites) {
+        checkNotStarted();
+        this.fastWrites = fastWrites;
+        return this;
+    }
+
+    public BulkImporter addNote(Note note) {
+        begin();
+        try {
+            if (noteInsert == null) {
+                noteInsert = connection.prepareStatement(NoteRepository.INSERT_SQL);
+            }
+            NoteRepository.bindInsert(noteInsert, note);
+            noteInsert.addBatch();
+            if (++pendingNotes == batchSize) {
+                flushNotes();
+            }
+        } catch (SQLException e) {
+            throw fail("Failed to add note " + note.getId(), e);
+        }
+        return this;
+    }
+
+    public BulkImporter addNotes(Collection<Note> notes) {
+        for (Note note : notes) {
+            addNote(note);
+        }
+        return this;
+    }
+
+    public BulkImporter addCard(Card card) {
+        begin();
+        try {
+            if (cardInsert == null) {
+                cardInsert = connection.prepareStatement(CardRepository.INSERT_SQL);
+            }
+            CardRepository.bindInsert(cardInsert, card);
+            cardInsert.addBatch();
+            if (++pendingCards == batchSize) {
+                flushCards();
+            }
+        } catch (SQLException e) {
+            throw fail("Failed to add card " + card.getId(), e);
+        }
+        return this;
+    }
+
+    public BulkImporter addCards(Collection<Card> cards) {
+        for (Card card : cards) {
+            addCard(card);
+        }
+        return this;
+    }
+
+    /**
+     * Sends the remaining batches and commits the import.
+     *
+     * @return the number of rows inserted
+     */
+    public long execute() {
+        if (finished) {
+            throw new IllegalStateException("Importer has already finished");
+        }
+        if (!started) {
+            finished = true;
+            return 0;
+        }
+        try {
+            flushNotes();
+            flushCards();
+            if (ownsTransaction) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            throw fail("Failed to commit bulk import", e);
+        }
+        finish();
+        long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+        logger.info("Bulk import committed {} rows in {} ms ({} rows/s)", rows, elapsed, rows * 1000 / elapsed);
+        return rows;
+    }
+
+    private void begin() {
+        if (finished) {
+            throw new IllegalStateException("Importer has already finished");
+        }
+        if (started) {
+            return;
+        }
+        logger.info("Starting bulk import (batch size {}, fast writes {})", batchSize, fastWrites);
+        writeLock.lock();
+        try {
+            ownsTransaction = connection.getAutoCommit();
+            // Journal mode cannot change inside a transaction, so a joined one keeps its settings
+            if (ownsTransaction && fastWrites) {
+                savedSynchronous = pragma("synchronous");
+                execute("PRAGMA synchronous = OFF");
+                // Leaving WAL mode would need every read connection closed
+                String journalMode = pragma("journal_mode");
+                if (!"wal".equalsIgnoreCase(journalMode)) {
+                    savedJournalMode = journalMode;
+                    execute("PRAGMA journal_mode = OFF");
+                }
+            }
+            if (ownsTransaction) {
+                connection.setAutoCommit(false);
+            }
+        } catch (SQLException e) {
+            restoreSettings();
+            writeLock.unlock();
+            throw new AnkiException("Failed to start bulk import", e);
+        }
+        started = true;
+        startedAt = System.currentTimeMillis();
+        onWrite.run();
+    }
+
+    private void flushNotes() throws SQLException {
+        if (pendingNotes > 0) {
+            noteInsert.executeBatch();
+            rows += pendingNotes;
+            pendingNotes = 0;
+        }
+    }
+
+    private void flushCards() throws SQLException {
+        if (pendingCards > 0) {
+            cardInsert.executeBatch();
+            rows += pendingCards;
+            pendingCards = 0;
+        }
+    }
+
+    private AnkiException fail(String message, SQLException e) {
+        logger.error("{}: {}", message, e.getMessage());
+        rollback();
+        return new AnkiException(message, e);
+    }
+
+    private void rollback() {
+        if (finished) {
+            return;
+        }
+        if (ownsTransaction) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                logger.warn("Failed to roll back bulk import: {}", e.getMessage());
+            }
+        }
+        finish();
+    }
+
+    private void finish() {
+        finished = true;
+        closeQuietly(noteInsert);
+        closeQuietly(cardInsert);
+        try {
+            if (ownsTransaction) {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    logger.warn("Failed to end bulk import transaction: {}", e.getMessage());
+                }
+                restoreSettings();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void restoreSettings() {
+        try {
+            if (savedJournalMode != null) {
+                execute("PRAGMA journal_mode = " + savedJournalMode);
+            }
+            if (savedSynchronous != null) {
+                execute("PRAGMA synchronous = " + savedSynchronous);
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to restore connection settings after bulk import: {}", e.getMessage());
+        }
+    }
+
+    private String pragma(String name) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private void checkNotStarted() {
+        if (started || finished) {
+            throw new IllegalStateException("Importer settings cannot change once rows have been added");
+        }
+    }
+
+    private static void closeQuietly(Statement stmt) {
+        if (stmt == null) {
+            return;
+        }
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            logger.warn("Failed to close statement: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rolls back the rows added so far unless {@link #execute()} has committed
+     * them.
+     */
+    @Override
+    public void close() {
+        if (started && !finished) {
+            logger.info("Bulk import closed without execute(), rolling back");
+        }
+        if (started) {
+            rollback();
+        } else {
+            finished = true;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.anki4j;
+
+import java.util.zip.Deflater;
+
+/**
+ * Options controlling how a collection is written as an APKG archive.
+ */
+public class ExportOptions {
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    public static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    private int databaseCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private int mediaCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean storeCompressedMedia = true;
+    private java.util.concurrent.Executor executor;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public ExportOptions() {
+    }
+
+    /**
+     * Default compression, with already-compressed media stored as-is.
+     */
+    public static ExportOptions defaults() {
+        return new ExportOptions();
+    }
+
+    /**
+     * Fastest deflate level for every entry and already-compressed media stored
+     * as-is. Suited to batch exports where CPU matters more than archive size.
+     */
+    public static ExportOptions fast() {
+        ExportOptions options = new ExportOptions();
+        options.setDatabaseCompressionLevel(Deflater.BEST_SPEED);
+        options.setMediaCompressionLevel(Deflater.BEST_SPEED);
+        return options;
+    }
+
+    /**
+     * @return Deflate level (0-9, or -1 for the zlib default) for the collection
+     *         database entry.
+     */
+    public int getDatabaseCompressionLevel() {
+        return databaseCompressionLevel;
+    }
+
+    public void setDatabaseCompressionLevel(int databaseCompressionLevel) {
+        this.databaseCompressionLevel = checkLevel(databaseCompressionLevel);
+    }
+
+    /**
+     * @return Deflate level (0-9, or -1 for the zlib default) for media entries
+     *         that are not stored as-is.
+     */
+    public int getMediaCompressionLevel() {
+        return mediaCompressionLevel;
+    }
+
+    public void setMediaCompressionLevel(int mediaCompressionLevel) {
+        this.mediaCompressionLevel = checkLevel(mediaCompressionLevel);
+    }
+
+    /**
+     * @return {@code true} if media that is already compressed (JPEG, PNG, MP3,
+     *         OGG, ...) is written with {@code ZipEntry.STORED} instead of being
+     *         deflated again. Types are detected by extension or magic bytes.
+     */
+    public boolean isStoreCompressedMedia() {
+        return storeCompressedMedia;
+    }
+
+    public void setStoreCompressedMedia(boolean storeCompressedMedia) {
+        this.storeCompressedMedia = storeCompressedMedia;
+    }
+
+    /**
+     * Deflates entries concurrently on {@code executor}, for example
+     * {@code Executors.newVirtualThreadPerTaskExecutor()} or a
+     * {@code ForkJoinPool}. The executor is not shut down by the export.
+     */
+    public static ExportOptions parallel(java.util.concurrent.Executor executor) {
+        ExportOptions options = new ExportOptions();
+        options.setExecutor(executor);
+        return options;
+    }
+
+    /**
+     * @return Executor that compresses media entries and database chunks
+     *         concurrently, or {@code null} to deflate on the calling thread.
+     */
+    public java.util.concurrent.Executor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(java.util.concurrent.Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return Number of chunks compressed at once in parallel mode. Together with
+     *         {@link #getChunkSize()} this bounds the memory used by the export.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return Size in bytes of the independently deflated chunks large entries are
+     *         split into in parallel mode.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be at least " + MIN_CHUNK_SIZE);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    private static int checkLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between -1 and 9: " + level);
+        }
+        return level;
+    }
+}
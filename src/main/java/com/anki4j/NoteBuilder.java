@@ -0,0 +1,179 @@
+package com.anki4j;
+
+import com.anki4j.internal.FieldChecksum;
+import com.anki4j.internal.GuidGenerator;
+import com.anki4j.internal.IdAllocator;
+import com.anki4j.internal.RenderService;
+import com.anki4j.model.Card;
+import com.anki4j.model.Field;
+import com.anki4j.model.Model;
+import com.anki4j.model.Note;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Builds new notes of one model together with their cards.
+ * <p>
+ * For every note the builder allocates increasing note and card IDs, fills in
+ * the sort field ({@code sfld}) and the SHA-1 checksum ({@code csum}) Anki uses
+ * to detect duplicates, and generates one new card per template whose question
+ * is not empty (one per cloze number for cloze models). Notes are kept until
+ * {@link #insert()} writes them and their cards in a single batched
+ * transaction:
+ *
+ * <pre>
+ * anki.noteBuilder(model, deckId)
+ *         .tags("vocab")
+ *         .add("bonjour", "hello")
+ *         .add("merci", "thank you")
+ *         .insert();
+ * </pre>
+ */
+public final class NoteBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(NoteBuilder.class);
+
+    private final Model model;
+    private final long deckId;
+    private final IdAllocator ids;
+    private final RenderService renderService;
+    private final Supplier<BulkImporter> importers;
+    private final List<String> fieldNames = new ArrayList<>();
+
+    private String tags = "";
+    private final List<Note> notes = new ArrayList<>();
+    private final List<Card> cards = new ArrayList<>();
+
+    NoteBuilder(Model model, long deckId, IdAllocator ids, RenderService renderService,
+            Supplier<BulkImporter> importers) {
+        if (model.getFlds() == null || model.getFlds().isEmpty()) {
+            throw new IllegalArgumentException("Model " + model.getName() + " has no fields");
+        }
+        this.model = model;
+        this.deckId = deckId;
+        this.ids = ids;
+        this.renderService = renderService;
+        this.importers = importers;
+        for (Field field : model.getFlds()) {
+            fieldNames.add(field.getName());
+        }
+    }
+
+    /**
+     * Sets the tags of the notes added from now on.
+     */
+    public NoteBuilder tags(String... tags) {
+        StringBuilder sb = new StringBuilder();
+        for (String tag : tags) {
+            if (tag != null && !tag.isBlank()) {
+                sb.append(' ').append(tag.trim());
+            }
+        }
+        // Anki stores tags space-separated with a leading and trailing space
+        this.tags = sb.length() == 0 ? "" : sb.append(' ').toString();
+        return this;
+    }
+
+    /**
+     * Adds a note with field values in the model's field order. Missing trailing
+     * values are left empty.
+     *
+     * @throws IllegalArgumentException if there are more values than fields, or
+     *                                  the note would generate no cards
+     */
+    public NoteBuilder add(String... values) {
+        if (values.length > fieldNames.size()) {
+            throw new IllegalArgumentException("Model " + model.getName() + " has " + fieldNames.size()
+                    + " fields but " + values.length + " values were given");
+        }
+        String[] fields = new String[fieldNames.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = i < values.length && values[i] != null ? values[i] : "";
+        }
+        return addFields(fields);
+    }
+
+    /**
+     * Adds a note with field values by field name. Fields not in the map are left
+     * empty.
+     *
+     * @throws IllegalArgumentException if a name is not a field of the model, or
+     *                                  the note would generate no cards
+     */
+    public NoteBuilder add(Map<String, String> values) {
+        String[] fields = new String[fieldNames.size()];
+        java.util.Arrays.fill(fields, "");
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            int ordinal = fieldNames.indexOf(entry.getKey());
+            if (ordinal < 0) {
+                throw new IllegalArgumentException("Model " + model.getName() + " has no field " + entry.getKey());
+            }
+            fields[ordinal] = entry.getValue() != null ? entry.getValue() : "";
+        }
+        return addFields(fields);
+    }
+
+    private NoteBuilder addFields(String[] fields) {
+        long now = System.currentTimeMillis() / 1000;
+        Note note = new Note(ids.nextId(), GuidGenerator.generate(), String.join("\u001f", fields), model.getId());
+        int sortField = model.getSortf() >= 0 && model.getSortf() < fields.length ? model.getSortf() : 0;
+        note.setSfld(FieldChecksum.stripHtml(fields[sortField]));
+        note.setCsum(FieldChecksum.checksum(fields[0]));
+        note.setMod(now);
+        note.setUsn(-1);
+        note.setTags(tags);
+        note.setData("");
+
+        int[] ordinals = renderService.cardOrdinals(note, model);
+        if (ordinals.length == 0) {
+            throw new IllegalArgumentException("Note would generate no cards: " + fields[0]);
+        }
+        long position = ids.nextPosition();
+        for (int ord : ordinals) {
+            Card card = new Card(ids.nextId(), note.getId(), deckId, ord);
+            card.setMod(now);
+            card.setUsn(-1);
+            card.setDue(position);
+            card.setData("");
+            cards.add(card);
+        }
+        notes.add(note);
+        return this;
+    }
+
+    /**
+     * @return the notes added since the last {@link #insert()}
+     */
+    public List<Note> getNotes() {
+        return Collections.unmodifiableList(notes);
+    }
+
+    /**
+     * @return the cards generated for {@link #getNotes()}
+     */
+    public List<Card> getCards() {
+        return Collections.unmodifiableList(cards);
+    }
+
+    /**
+     * Writes the pending notes and their cards in one transaction and clears
+     * them from the builder.
+     *
+     * @return the inserted notes
+     */
+    public List<Note> insert() {
+        logger.info("Inserting {} notes with {} cards for model {}", notes.size(), cards.size(), model.getName());
+        List<Note> inserted = new ArrayList<>(notes);
+        try (BulkImporter importer = importers.get()) {
+            importer.addNotes(notes).addCards(cards).execute();
+        }
+        notes.clear();
+        cards.clear();
+        return inserted;
+    }
+}
@@ -0,0 +1,181 @@
+package com.anki4j;
+
+/**
+ * Options controlling how an APKG package is opened.
+ * The defaults match the behaviour of {@link AnkiCollection#read(String)}.
+ */
+public class OpenOptions {
+    public static final long DEFAULT_MEDIA_CACHE_BYTES = 32L * 1024 * 1024;
+
+    private boolean lazyMedia = false;
+    private long mediaCacheBytes = DEFAULT_MEDIA_CACHE_BYTES;
+    private boolean fileBackedDatabase = false;
+    private java.nio.file.Path workDirectory;
+    private long mmapSize = 0;
+    private int cacheSizeKib = 0;
+    private int fetchSize = 0;
+    private boolean createIndexes = false;
+    private boolean dropIndexesOnExport = false;
+    private boolean concurrent = false;
+    private int readConnections = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    public OpenOptions() {
+    }
+
+    public static OpenOptions defaults() {
+        return new OpenOptions();
+    }
+
+    /**
+     * @return {@code true} if media entries are inflated on demand instead of
+     *         being loaded when the package is opened.
+     */
+    public boolean isLazyMedia() {
+        return lazyMedia;
+    }
+
+    public void setLazyMedia(boolean lazyMedia) {
+        this.lazyMedia = lazyMedia;
+    }
+
+    /**
+     * @return Upper bound, in bytes, for recently read media kept in memory
+     *         when {@link #isLazyMedia()} is enabled.
+     */
+    public long getMediaCacheBytes() {
+        return mediaCacheBytes;
+    }
+
+    public void setMediaCacheBytes(long mediaCacheBytes) {
+        if (mediaCacheBytes < 0) {
+            throw new IllegalArgumentException("mediaCacheBytes must not be negative");
+        }
+        this.mediaCacheBytes = mediaCacheBytes;
+    }
+
+    /**
+     * @return {@code true} if the collection database is extracted once to a file
+     *         and opened with {@code jdbc:sqlite:<file>} instead of being
+     *         restored into an in-memory database.
+     */
+    public boolean isFileBackedDatabase() {
+        return fileBackedDatabase;
+    }
+
+    public void setFileBackedDatabase(boolean fileBackedDatabase) {
+        this.fileBackedDatabase = fileBackedDatabase;
+    }
+
+    /**
+     * @return Directory the database file is extracted to, or {@code null} for the
+     *         system temporary directory. The file is deleted on close.
+     */
+    public java.nio.file.Path getWorkDirectory() {
+        return workDirectory;
+    }
+
+    public void setWorkDirectory(java.nio.file.Path workDirectory) {
+        this.workDirectory = workDirectory;
+    }
+
+    /**
+     * @return Value for {@code PRAGMA mmap_size} in bytes, or 0 to keep the SQLite
+     *         default. Only applies to file-backed databases.
+     */
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public void setMmapSize(long mmapSize) {
+        if (mmapSize < 0) {
+            throw new IllegalArgumentException("mmapSize must not be negative");
+        }
+        this.mmapSize = mmapSize;
+    }
+
+    /**
+     * @return SQLite page cache size in KiB ({@code PRAGMA cache_size}), or 0 to
+     *         keep the SQLite default.
+     */
+    public int getCacheSizeKib() {
+        return cacheSizeKib;
+    }
+
+    public void setCacheSizeKib(int cacheSizeKib) {
+        if (cacheSizeKib < 0) {
+            throw new IllegalArgumentException("cacheSizeKib must not be negative");
+        }
+        this.cacheSizeKib = cacheSizeKib;
+    }
+
+    /**
+     * @return Rows fetched per round trip by the streaming cursors
+     *         ({@code streamCards()} and friends), or 0 for the driver default.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("fetchSize must not be negative");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @return {@code true} if Anki's standard secondary indexes (on
+     *         {@code cards.nid}, {@code cards(did, queue, due)}, {@code revlog.cid},
+     *         {@code notes.csum} and the {@code usn} columns) are built when
+     *         missing, right after the database is opened.
+     */
+    public boolean isCreateIndexes() {
+        return createIndexes;
+    }
+
+    public void setCreateIndexes(boolean createIndexes) {
+        this.createIndexes = createIndexes;
+    }
+
+    /**
+     * @return {@code true} if indexes added by this library are left out of
+     *         exported packages, keeping them as small as the original.
+     */
+    public boolean isDropIndexesOnExport() {
+        return dropIndexesOnExport;
+    }
+
+    public void setDropIndexesOnExport(boolean dropIndexesOnExport) {
+        this.dropIndexesOnExport = dropIndexesOnExport;
+    }
+
+    /**
+     * @return {@code true} if the collection may be used from several threads.
+     *         The database is then opened from a file in WAL mode, reads run in
+     *         parallel on a pool of read-only connections and writes are
+     *         serialized on a single connection. Implies
+     *         {@link #isFileBackedDatabase()}.
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    /**
+     * @return Number of read-only connections opened in concurrent mode, i.e. how
+     *         many queries may run at the same time.
+     */
+    public int getReadConnections() {
+        return readConnections;
+    }
+
+    public void setReadConnections(int readConnections) {
+        if (readConnections <= 0) {
+            throw new IllegalArgumentException("readConnections must be positive");
+        }
+        this.readConnections = readConnections;
+    }
+}
@@ -1,6 +1,7 @@
 package com.anki4j.internal;
 
 import com.anki4j.exception.AnkiException;
+import com.anki4j.model.Model;
 import com.anki4j.model.Note;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,47 +9,201 @@ import org.slf4j.LoggerFactory;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 
-public class AnkiWriter {
+/**
+ * Write-behind unit of work for edited notes.
+ * <p>
+ * {@link #save(Note)} only records a dirty note; {@link #flush()} writes all
+ * recorded notes with one batched {@code UPDATE} in a single transaction,
+ * recomputing {@code sfld} and {@code csum} from the new fields and marking
+ * them for sync ({@code usn = -1}). Saving the same note twice before a flush
+ * writes it once.
+ * <p>
+ * A save records a copy of the note, so a row object that is reused for the
+ * next note (as {@code scanNotes} does) can be saved once per row.
+ */
+public class AnkiWriter implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(AnkiWriter.class);
 
+    private static final String UPDATE_SQL = "UPDATE notes SET flds = ?, sfld = ?, csum = ?, mod = ?, usn = -1 "
+            + "WHERE id = ?";
+    private static final int BATCH_SIZE = 1000;
+
     private final Connection connection;
+    private final ModelService modelService;
+    private final StatementCache statements;
+
+    // Notes saved since the last flush, keyed by note ID; read by any thread
+    private final Map<Long, SavedNote> pending = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    // The caller's note and a copy of it taken when it was saved
+    private static final class SavedNote {
+        final Note note;
+        final Note contents;
+
+        SavedNote(Note note) {
+            this.note = note;
+            this.contents = copyOf(note);
+        }
+
+        // Whether the caller's object still holds the saved note
+        boolean isCurrent() {
+            return note.getId() == contents.getId() && java.util.Objects.equals(note.getFlds(), contents.getFlds());
+        }
+    }
 
-    public AnkiWriter(Connection connection) {
+    public AnkiWriter(Connection connection, ModelService modelService) {
         logger.info("Initializing AnkiWriter");
         this.connection = connection;
+        this.modelService = modelService;
+        this.statements = new StatementCache(connection);
     }
 
+    /**
+     * Records a note for the next {@link #flush()} if it is dirty.
+     */
     public void save(Note note) {
         if (!note.isDirty()) {
-            logger.info("Note ID {} is not dirty, skipping save", note.getId());
+            logger.debug("Note ID {} is not dirty, skipping save", note.getId());
             return;
         }
+        logger.debug("Queued note ID {} for write-behind", note.getId());
+        pending.put(note.getId(), new SavedNote(note));
+    }
 
-        logger.info("Saving changes for note ID: {}", note.getId());
-        String rawFields = note.getFlds();
-        long mod = System.currentTimeMillis();
+    /**
+     * @return the saved but not yet flushed version of a note, if any: the saved
+     *         object itself unless it has since been reused for another note
+     */
+    public Optional<Note> getPending(long noteId) {
+        SavedNote saved = pending.get(noteId);
+        if (saved == null) {
+            return Optional.empty();
+        }
+        return Optional.of(saved.isCurrent() ? saved.note : copyOf(saved.contents));
+    }
 
-        String sql = "UPDATE notes SET flds = ?, mod = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, rawFields);
-            pstmt.setLong(2, mod);
-            pstmt.setLong(3, note.getId());
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
 
-            int affected = pstmt.executeUpdate();
-            if (affected == 0) {
-                logger.error("Failed to update note ID {}: Note not found", note.getId());
-                throw new AnkiException("Failed to update note: Note with ID " + note.getId() + " not found.");
-            }
+    /**
+     * Writes all saved notes in one transaction.
+     *
+     * @throws AnkiException if a note no longer exists; nothing is written then,
+     *                       and the missing note is dropped so that the others
+     *                       can be flushed again
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long mod = start / 1000;
+        SavedNote[] saved;
+        synchronized (pending) {
+            saved = pending.values().toArray(new SavedNote[0]);
+        }
+        Note[] notes = new Note[saved.length];
+        for (int i = 0; i < saved.length; i++) {
+            notes[i] = saved[i].contents;
+        }
+        String[] sortFields = new String[notes.length];
+        long[] checksums = new long[notes.length];
+        Map<Long, Integer> sortFieldByModel = new HashMap<>();
+        for (int i = 0; i < notes.length; i++) {
+            String[] fields = notes[i].getFlds().split("\u001f", -1);
+            int sortf = sortFieldByModel.computeIfAbsent(notes[i].getMid(),
+                    mid -> modelService.getModel(mid).map(Model::getSortf).orElse(0));
+            sortFields[i] = FieldChecksum.stripHtml(fields[sortf >= 0 && sortf < fields.length ? sortf : 0]);
+            checksums[i] = FieldChecksum.checksum(fields[0]);
+        }
 
-            logger.info("Successfully updated note ID {} in database", note.getId());
+        try {
+            Transaction.run(connection, () -> {
+                PreparedStatement pstmt = statements.prepare(UPDATE_SQL);
+                pstmt.clearBatch(); // in case a failed flush left rows behind
+                int batchStart = 0;
+                for (int i = 0; i < notes.length; i++) {
+                    pstmt.setString(1, notes[i].getFlds());
+                    pstmt.setString(2, sortFields[i]);
+                    pstmt.setLong(3, checksums[i]);
+                    pstmt.setLong(4, mod);
+                    pstmt.setLong(5, notes[i].getId());
+                    pstmt.addBatch();
+                    if (i + 1 - batchStart == BATCH_SIZE || i == notes.length - 1) {
+                        executeBatch(pstmt, notes, batchStart);
+                        batchStart = i + 1;
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            logger.error("Error flushing {} saved notes: {}", notes.length, e.getMessage());
+            throw new AnkiException("Failed to save notes to database", e);
+        }
 
-            // Reset dirty flag after successful save
-            note.setDirty(false);
+        for (int i = 0; i < saved.length; i++) {
+            if (saved[i].isCurrent()) {
+                Note note = saved[i].note;
+                note.setSfld(sortFields[i]);
+                note.setCsum(checksums[i]);
+                note.setMod(mod);
+                note.setUsn(-1);
+                note.setDirty(false);
+            }
+            pending.remove(saved[i].contents.getId(), saved[i]);
+        }
+        logger.info("Flushed {} saved notes in {} ms", notes.length, System.currentTimeMillis() - start);
+    }
 
-        } catch (SQLException e) {
-            logger.error("Error saving note ID {}: {}", note.getId(), e.getMessage());
-            throw new AnkiException("Failed to save note to database", e);
+    /**
+     * Drops saved notes without writing them. Their dirty flags are kept.
+     */
+    public void discard() {
+        if (!pending.isEmpty()) {
+            logger.info("Discarding {} saved notes", pending.size());
+            pending.clear();
         }
     }
+
+    // Executes the statement's batch, which holds notes[from] onwards
+    private void executeBatch(PreparedStatement pstmt, Note[] notes, int from) throws SQLException {
+        int[] affected = pstmt.executeBatch();
+        for (int i = 0; i < affected.length; i++) {
+            if (affected[i] == 0) {
+                long id = notes[from + i].getId();
+                logger.error("Failed to update note ID {}: Note not found", id);
+                pending.remove(id);
+                throw new AnkiException("Failed to update note: Note with ID " + id + " not found.");
+            }
+        }
+    }
+
+    private static Note copyOf(Note note) {
+        Note copy = new Note();
+        copy.setId(note.getId());
+        copy.setGuid(note.getGuid());
+        copy.setMid(note.getMid());
+        copy.setMod(note.getMod());
+        copy.setUsn(note.getUsn());
+        copy.setTags(note.getTags());
+        copy.setFlds(note.getFlds());
+        copy.setSfld(note.getSfld());
+        copy.setCsum(note.getCsum());
+        copy.setFlags(note.getFlags());
+        copy.setData(note.getData());
+        copy.setDirty(note.isDirty());
+        return copy;
+    }
+
+    @Override
+    public void close() {
+        pending.clear();
+        statements.close();
+    }
 }
@@ -0,0 +1,162 @@
+package com.anki4j.internal;
+
+import com.anki4j.ExportOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a collection as an APKG archive. The database backup and every media
+ * entry are streamed into the zip through a fixed-size buffer, so memory use
+ * does not grow with the size of the deck.
+ */
+public class ApkgExporter {
+    private static final Logger logger = LoggerFactory.getLogger(ApkgExporter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Connection connection;
+    private final MediaManager mediaManager;
+    private final ExportOptions options;
+    private final List<String> indexesToDrop;
+    private final ObjectMapper objectMapper;
+
+    public ApkgExporter(Connection connection, MediaManager mediaManager, ExportOptions options) {
+        this(connection, mediaManager, options, List.of());
+    }
+
+    /**
+     * @param indexesToDrop indexes to remove from the exported database copy;
+     *                      the live database keeps them
+     */
+    public ApkgExporter(Connection connection, MediaManager mediaManager, ExportOptions options,
+            List<String> indexesToDrop) {
+        this.connection = connection;
+        this.mediaManager = mediaManager;
+        this.options = options;
+        this.indexesToDrop = indexesToDrop;
+        this.objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Writes the archive to {@code out}. The stream is finished but not closed.
+     * Entries are deflated on {@link ExportOptions#getExecutor()} when one is
+     * configured, and on the calling thread otherwise.
+     */
+    public void export(OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ZipSink sink = options.getExecutor() != null
+                ? new ParallelZipWriter(out, options.getExecutor(), options.getChunkSize(), options.getParallelism() * 2)
+                : new SequentialZipSink(out, BUFFER_SIZE);
+
+        // 1. Back up the database to a temporary file and stream it into the zip
+        Path dbFile = DatabaseManager.backupToFile(connection);
+        try {
+            DatabaseManager.dropIndexes(dbFile, indexesToDrop);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(dbFile);
+            throw e;
+        }
+        try (InputStream in = Files.newInputStream(dbFile)) {
+            sink.putDeflated("collection.anki21", in, options.getDatabaseCompressionLevel());
+        } finally {
+            Files.deleteIfExists(dbFile);
+        }
+
+        // 2. Add media, storing already-compressed formats as-is
+        Map<String, String> zipNameToFilename = new HashMap<>();
+        for (Map.Entry<String, String> entry : mediaManager.getFilenameToZipName().entrySet()) {
+            zipNameToFilename.put(entry.getValue(), entry.getKey());
+        }
+
+        int mediaCount = 0;
+        int storedCount = 0;
+        for (String zipName : mediaManager.getMediaZipNames()) {
+            ZipEntry stored = null;
+            if (options.isStoreCompressedMedia() && isCompressed(zipName, zipNameToFilename.get(zipName))) {
+                stored = checksum(zipName, buffer);
+                if (stored == null) {
+                    continue;
+                }
+            }
+            try (InputStream in = mediaManager.openEntry(zipName)) {
+                if (in == null) {
+                    continue;
+                }
+                if (stored != null) {
+                    sink.putStored(zipName, in, stored.getSize(), stored.getCrc());
+                    storedCount++;
+                } else {
+                    sink.putDeflated(zipName, in, options.getMediaCompressionLevel());
+                }
+                mediaCount++;
+            }
+        }
+
+        // 3. Add 'media' JSON
+        if (!zipNameToFilename.isEmpty()) {
+            byte[] mediaJson = objectMapper.writeValueAsBytes(zipNameToFilename);
+            sink.putDeflated("media", new ByteArrayInputStream(mediaJson), options.getMediaCompressionLevel());
+        }
+
+        sink.finish();
+        logger.info("Exported database and {} media entries ({} stored uncompressed)", mediaCount, storedCount);
+    }
+
+    private boolean isCompressed(String zipName, String filename) throws IOException {
+        if (MediaTypes.hasCompressedExtension(filename)) {
+            return true;
+        }
+        try (InputStream in = mediaManager.openEntry(zipName)) {
+            if (in == null) {
+                return false;
+            }
+            byte[] header = in.readNBytes(MediaTypes.SNIFF_LENGTH);
+            return MediaTypes.isCompressedContent(header, header.length);
+        }
+    }
+
+    /**
+     * Determines the size and CRC a {@code STORED} entry needs before any data is
+     * written. Both are taken from the source archive when known, or computed
+     * with an extra pass over the content otherwise.
+     *
+     * @return an entry carrying size and CRC, or {@code null} if the media entry
+     *         has no content
+     */
+    private ZipEntry checksum(String zipName, byte[] buffer) throws IOException {
+        ZipEntry source = mediaManager.getSourceEntry(zipName);
+        if (source != null && source.getSize() >= 0 && source.getCrc() >= 0) {
+            return source;
+        }
+        try (InputStream in = mediaManager.openEntry(zipName)) {
+            if (in == null) {
+                return null;
+            }
+            CRC32 crc32 = new CRC32();
+            long size = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc32.update(buffer, 0, read);
+                size += read;
+            }
+            ZipEntry entry = new ZipEntry(zipName);
+            entry.setSize(size);
+            entry.setCrc(crc32.getValue());
+            return entry;
+        }
+    }
+}
@@ -8,17 +8,25 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-public class CardRepository {
+public class CardRepository implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(CardRepository.class);
 
+    public static final String INSERT_SQL = "INSERT INTO cards (id, nid, did, ord, mod, usn, type, queue, due, ivl, factor, reps, lapses, left, "
+            + "odue, odid, flags, data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     private final Connection connection;
+    private final StatementCache statements;
 
     public CardRepository(Connection connection) {
         logger.info("Initializing CardRepository");
         this.connection = connection;
+        this.statements = new StatementCache(connection);
     }
 
     public List<Card> getCards() {
@@ -33,14 +41,15 @@ public class CardRepository {
             sql += " WHERE did = ?";
         }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try {
+            PreparedStatement stmt = statements.prepare(sql);
             if (deckId != -1) {
                 stmt.setLong(1, deckId);
             }
             try (ResultSet rs = stmt.executeQuery()) {
+                CardColumns columns = new CardColumns(rs);
                 while (rs.next()) {
-                    Card c = mapResultSetToCard(rs);
-                    cards.add(c);
+                    cards.add(columns.read(rs, new Card()));
                 }
             }
             logger.info("Found {} cards", cards.size());
@@ -51,14 +60,116 @@ public class CardRepository {
         return cards;
     }
 
+    /**
+     * Streams cards from a live cursor instead of materializing them.
+     *
+     * @param deckId deck to filter by, or -1 for all cards
+     * @return a stream that must be closed if not consumed to the end
+     */
+    public Stream<Card> streamCards(long deckId, int fetchSize) {
+        logger.info("Streaming cards for deck ID: {}", deckId);
+        return RowStream.of(prepareCardQuery(deckId), fetchSize, CardColumns.newRows());
+    }
+
+    /**
+     * Passes every card to {@code action} using one reused {@link Card}
+     * instance. The card must not be kept after {@code action} returns.
+     *
+     * @param deckId deck to filter by, or -1 for all cards
+     */
+    public void scanCards(long deckId, int fetchSize, Consumer<? super Card> action) {
+        logger.info("Scanning cards for deck ID: {}", deckId);
+        RowStream.scan(prepareCardQuery(deckId), fetchSize, CardColumns.reusedRow(), action);
+    }
+
+    // Unlike cached statements, the returned statement belongs to the caller
+    private PreparedStatement prepareCardQuery(long deckId) {
+        String sql = "SELECT * FROM cards";
+        if (deckId != -1) {
+            sql += " WHERE did = ?";
+        }
+        try {
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            if (deckId != -1) {
+                stmt.setLong(1, deckId);
+            }
+            return stmt;
+        } catch (SQLException e) {
+            logger.error("Failed to prepare card query: {}", e.getMessage());
+            throw new AnkiException("Failed to prepare card query", e);
+        }
+    }
+
+    /**
+     * Fetches the cards of some decks in one scheduling queue that are due at or
+     * before {@code dueAtMost}, in due order. Served by {@code ix_cards_sched}.
+     *
+     * @param limit maximum number of cards, or -1 for no limit
+     */
+    public List<Card> getDueCards(long[] deckIds, int queue, long dueAtMost, int limit) {
+        logger.debug("Fetching up to {} cards of queue {} in {} deck(s)", limit, queue, deckIds.length);
+        List<Card> cards = new ArrayList<>();
+        if (deckIds.length == 0 || limit == 0) {
+            return cards;
+        }
+        StringBuilder sql = new StringBuilder("SELECT * FROM cards WHERE did IN (");
+        for (int i = 0; i < deckIds.length; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") AND queue = ? AND due <= ? ORDER BY due, id LIMIT ?");
+
+        try {
+            PreparedStatement stmt = statements.prepare(sql.toString());
+            int index = 1;
+            for (long deckId : deckIds) {
+                stmt.setLong(index++, deckId);
+            }
+            stmt.setInt(index++, queue);
+            stmt.setLong(index++, dueAtMost);
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                CardColumns columns = new CardColumns(rs);
+                while (rs.next()) {
+                    cards.add(columns.read(rs, new Card()));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to query due cards: {}", e.getMessage());
+            throw new AnkiException("Failed to query due cards", e);
+        }
+        return cards;
+    }
+
+    /**
+     * Counts the cards filed directly in each deck with one {@code GROUP BY did}
+     * query.
+     */
+    public java.util.Map<Long, Long> countCardsByDeck() {
+        logger.info("Counting cards per deck");
+        java.util.Map<Long, Long> counts = new java.util.HashMap<>();
+        try {
+            PreparedStatement stmt = statements.prepare("SELECT did, count(*) FROM cards GROUP BY did");
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getLong(1), rs.getLong(2));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to count cards per deck: {}", e.getMessage());
+            throw new AnkiException("Failed to count cards per deck", e);
+        }
+        return counts;
+    }
+
     public Optional<Card> getCard(long cardId) {
         logger.info("Fetching card with ID: {}", cardId);
         String sql = "SELECT * FROM cards WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try {
+            PreparedStatement stmt = statements.prepare(sql);
             stmt.setLong(1, cardId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Card c = mapResultSetToCard(rs);
+                    Card c = new CardColumns(rs).read(rs, new Card());
                     logger.info("Card found: {}", cardId);
                     return Optional.of(c);
                 }
@@ -71,55 +182,172 @@ public class CardRepository {
         return Optional.empty();
     }
 
-    private Card mapResultSetToCard(ResultSet rs) throws SQLException {
-        Card c = new Card();
-        c.setId(rs.getLong("id"));
-        c.setNid(rs.getLong("nid"));
-        c.setDid(rs.getLong("did"));
-        c.setOrd(rs.getInt("ord"));
-        c.setMod(rs.getLong("mod"));
-        c.setUsn(rs.getInt("usn"));
-        c.setType(rs.getInt("type"));
-        c.setQueue(rs.getInt("queue"));
-        c.setDue(rs.getLong("due"));
-        c.setIvl(rs.getInt("ivl"));
-        c.setFactor(rs.getInt("factor"));
-        c.setReps(rs.getInt("reps"));
-        c.setLapses(rs.getInt("lapses"));
-        c.setLeft(rs.getInt("left"));
-        c.setOdue(rs.getLong("odue"));
-        c.setOdid(rs.getLong("odid"));
-        c.setFlags(rs.getInt("flags"));
-        c.setData(rs.getString("data"));
-        return c;
+    /**
+     * Fetches many cards with chunked {@code IN} queries.
+     *
+     * @return the cards found, in the order of {@code cardIds}; unknown IDs are
+     *         skipped
+     */
+    public List<Card> getCardsByIds(long[] cardIds) {
+        logger.info("Fetching {} cards by ID", cardIds.length);
+        java.util.Map<Long, Card> byId = new java.util.HashMap<>();
+        try {
+            IdBatchQuery.forEachRow(connection, statements, "SELECT * FROM cards WHERE id IN {ids}", cardIds,
+                    rs -> {
+                        CardColumns columns = new CardColumns(rs);
+                        return row -> {
+                            Card c = columns.read(row, new Card());
+                            byId.put(c.getId(), c);
+                        };
+                    });
+        } catch (SQLException e) {
+            logger.error("Failed to query cards by IDs: {}", e.getMessage());
+            throw new AnkiException("Failed to query cards by ids", e);
+        }
+        return IdBatchQuery.inInputOrder(cardIds, byId);
     }
 
     public void addCard(Card card) {
         logger.info("Adding card to database: {}", card.getId());
-        String sql = "INSERT INTO cards (id, nid, did, ord, mod, usn, type, queue, due, ivl, factor, reps, lapses, left, odue, odid, flags, data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, card.getId());
-            pstmt.setLong(2, card.getNid());
-            pstmt.setLong(3, card.getDid());
-            pstmt.setInt(4, card.getOrd());
-            pstmt.setLong(5, card.getMod() == 0 ? System.currentTimeMillis() / 1000 : card.getMod());
-            pstmt.setInt(6, card.getUsn());
-            pstmt.setInt(7, card.getType());
-            pstmt.setInt(8, card.getQueue());
-            pstmt.setLong(9, card.getDue());
-            pstmt.setInt(10, card.getIvl());
-            pstmt.setInt(11, card.getFactor());
-            pstmt.setInt(12, card.getReps());
-            pstmt.setInt(13, card.getLapses());
-            pstmt.setInt(14, card.getLeft());
-            pstmt.setLong(15, card.getOdue());
-            pstmt.setLong(16, card.getOdid());
-            pstmt.setInt(17, card.getFlags());
-            pstmt.setString(18, card.getData() == null ? "" : card.getData());
+        try {
+            PreparedStatement pstmt = statements.prepare(INSERT_SQL);
+            bindInsert(pstmt, card);
             pstmt.executeUpdate();
         } catch (SQLException e) {
             logger.error("Failed to add card: {}", e.getMessage());
             throw new AnkiException("Failed to add card", e);
         }
     }
+
+    /**
+     * Inserts cards with JDBC batches of {@code batchSize} rows, all in one
+     * transaction (or in the caller's, if one is open).
+     */
+    public void addCards(Collection<Card> cards, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        logger.info("Adding {} cards to database in batches of {}", cards.size(), batchSize);
+        long start = System.currentTimeMillis();
+        try {
+            Transaction.run(connection, () -> {
+                PreparedStatement pstmt = statements.prepare(INSERT_SQL);
+                pstmt.clearBatch(); // in case a failed call left rows behind
+                int pending = 0;
+                for (Card card : cards) {
+                    bindInsert(pstmt, card);
+                    pstmt.addBatch();
+                    if (++pending == batchSize) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    pstmt.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to add cards: {}", e.getMessage());
+            throw new AnkiException("Failed to add cards", e);
+        }
+        logger.info("Added {} cards in {} ms", cards.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Binds the parameters of {@link #INSERT_SQL} for one card.
+     */
+    public static void bindInsert(PreparedStatement stmt, Card card) throws SQLException {
+        stmt.setLong(1, card.getId());
+        stmt.setLong(2, card.getNid());
+        stmt.setLong(3, card.getDid());
+        stmt.setInt(4, card.getOrd());
+        stmt.setLong(5, card.getMod() == 0 ? System.currentTimeMillis() / 1000 : card.getMod());
+        stmt.setInt(6, card.getUsn());
+        stmt.setInt(7, card.getType());
+        stmt.setInt(8, card.getQueue());
+        stmt.setLong(9, card.getDue());
+        stmt.setInt(10, card.getIvl());
+        stmt.setInt(11, card.getFactor());
+        stmt.setInt(12, card.getReps());
+        stmt.setInt(13, card.getLapses());
+        stmt.setInt(14, card.getLeft());
+        stmt.setLong(15, card.getOdue());
+        stmt.setLong(16, card.getOdid());
+        stmt.setInt(17, card.getFlags());
+        stmt.setString(18, card.getData() == null ? "" : card.getData());
+    }
+
+    @Override
+    public void close() {
+        statements.close();
+    }
+
+    /**
+     * Column indexes of a card result set, resolved once so rows are read by
+     * position instead of by name.
+     */
+    private static final class CardColumns {
+        private final int id, nid, did, ord, mod, usn, type, queue, due, ivl, factor, reps, lapses,
+                left, odue, odid, flags, data;
+
+        CardColumns(ResultSet rs) throws SQLException {
+            id = rs.findColumn("id");
+            nid = rs.findColumn("nid");
+            did = rs.findColumn("did");
+            ord = rs.findColumn("ord");
+            mod = rs.findColumn("mod");
+            usn = rs.findColumn("usn");
+            type = rs.findColumn("type");
+            queue = rs.findColumn("queue");
+            due = rs.findColumn("due");
+            ivl = rs.findColumn("ivl");
+            factor = rs.findColumn("factor");
+            reps = rs.findColumn("reps");
+            lapses = rs.findColumn("lapses");
+            left = rs.findColumn("left");
+            odue = rs.findColumn("odue");
+            odid = rs.findColumn("odid");
+            flags = rs.findColumn("flags");
+            data = rs.findColumn("data");
+        }
+
+        Card read(ResultSet rs, Card card) throws SQLException {
+            card.setId(rs.getLong(id));
+            card.setNid(rs.getLong(nid));
+            card.setDid(rs.getLong(did));
+            card.setOrd(rs.getInt(ord));
+            card.setMod(rs.getLong(mod));
+            card.setUsn(rs.getInt(usn));
+            card.setType(rs.getInt(type));
+            card.setQueue(rs.getInt(queue));
+            card.setDue(rs.getLong(due));
+            card.setIvl(rs.getInt(ivl));
+            card.setFactor(rs.getInt(factor));
+            card.setReps(rs.getInt(reps));
+            card.setLapses(rs.getInt(lapses));
+            card.setLeft(rs.getInt(left));
+            card.setOdue(rs.getLong(odue));
+            card.setOdid(rs.getLong(odid));
+            card.setFlags(rs.getInt(flags));
+            card.setData(rs.getString(data));
+            return card;
+        }
+
+        /** Maps every row to a new Card. */
+        static RowStream.RowMapperFactory<Card> newRows() {
+            return rs -> {
+                CardColumns columns = new CardColumns(rs);
+                return row -> columns.read(row, new Card());
+            };
+        }
+
+        /** Maps every row into the same Card instance. */
+        static RowStream.RowMapperFactory<Card> reusedRow() {
+            return rs -> {
+                CardColumns columns = new CardColumns(rs);
+                Card card = new Card();
+                return row -> columns.read(row, card);
+            };
+        }
+    }
 }
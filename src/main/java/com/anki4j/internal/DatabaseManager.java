@@ -4,13 +4,14 @@ import com.anki4j.exception.AnkiException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 public class DatabaseManager {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseManager.class);
@@ -28,6 +29,7 @@ public class DatabaseManager {
                     "CREATE TABLE IF NOT EXISTS revlog (id INTEGER PRIMARY KEY, cid INTEGER NOT NULL, usn INTEGER NOT NULL, ease INTEGER NOT NULL, ivl INTEGER NOT NULL, lastIvl INTEGER NOT NULL, factor INTEGER NOT NULL, time INTEGER NOT NULL, type INTEGER NOT NULL)");
             stmt.execute(
                     "CREATE TABLE IF NOT EXISTS graves (usn INTEGER NOT NULL, oid INTEGER NOT NULL, type INTEGER NOT NULL)");
+            stmt.execute(IndexManager.CARDS_SCHED);
 
             // Initialize 'col' table with default structure
             long now = System.currentTimeMillis() / 1000;
@@ -36,31 +38,45 @@ public class DatabaseManager {
         }
     }
 
-    public static byte[] backup(Connection conn) {
+    /**
+     * Writes a consistent copy of the database to a new temporary file. The caller
+     * owns the returned file and must delete it. A copy of a WAL-mode database is
+     * switched back to a rollback journal so it can be opened on its own.
+     */
+    public static java.nio.file.Path backupToFile(Connection conn) {
         java.nio.file.Path tempFile = null;
         try {
             tempFile = java.nio.file.Files.createTempFile("anki4j_export", ".db");
+            boolean wal;
             try (Statement stmt = conn.createStatement()) {
                 stmt.executeUpdate("backup to " + tempFile.toAbsolutePath());
+                try (java.sql.ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+                    wal = rs.next() && "wal".equalsIgnoreCase(rs.getString(1));
+                }
+            }
+            if (wal) {
+                try (Connection copy = java.sql.DriverManager.getConnection("jdbc:sqlite:" + tempFile.toAbsolutePath());
+                        Statement stmt = copy.createStatement()) {
+                    stmt.execute("PRAGMA journal_mode = DELETE");
+                }
             }
-            return java.nio.file.Files.readAllBytes(tempFile);
+            return tempFile;
         } catch (Exception e) {
-            throw new AnkiException("Failed to backup memory database", e);
-        } finally {
             if (tempFile != null) {
                 try {
                     java.nio.file.Files.deleteIfExists(tempFile);
                 } catch (IOException ignored) {
                 }
             }
+            throw new AnkiException("Failed to backup database", e);
         }
     }
 
-    public static void restore(Connection conn, byte[] dbBytes) throws Exception {
-        logger.info("Restoring database bytes into in-memory SQLite");
+    public static void restore(Connection conn, InputStream dbStream) throws Exception {
+        logger.info("Restoring database stream into in-memory SQLite");
         java.nio.file.Path tempFile = java.nio.file.Files.createTempFile("anki4j_db", ".db");
         try {
-            java.nio.file.Files.write(tempFile, dbBytes);
+            java.nio.file.Files.copy(dbStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
             try (Statement stmt = conn.createStatement()) {
                 stmt.executeUpdate("restore from " + tempFile.toAbsolutePath());
             }
@@ -69,30 +85,76 @@ public class DatabaseManager {
         }
     }
 
-    public static byte[] extractDatabaseBytes(byte[] zipData) throws IOException {
-        try (ZipInputStream zis = new ZipInputStream(new java.io.ByteArrayInputStream(zipData))) {
-            ZipEntry entry;
-            byte[] result21 = null;
-            byte[] result20 = null;
+    /**
+     * Extracts a database stream once into {@code directory} (or the system
+     * temporary directory when {@code null}) so it can be opened in place.
+     *
+     * @return the extracted database file
+     */
+    public static java.nio.file.Path extractToFile(InputStream dbStream, java.nio.file.Path directory)
+            throws IOException {
+        java.nio.file.Path dbFile = directory == null
+                ? java.nio.file.Files.createTempFile("anki4j_db", ".db")
+                : java.nio.file.Files.createTempFile(directory, "anki4j_db", ".db");
+        try {
+            java.nio.file.Files.copy(dbStream, dbFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            java.nio.file.Files.deleteIfExists(dbFile);
+            throw e;
+        }
+        logger.info("Extracted database to {} ({} bytes)", dbFile, java.nio.file.Files.size(dbFile));
+        return dbFile;
+    }
 
-            try {
-                while ((entry = zis.getNextEntry()) != null) {
-                    if (entry.getName().equals("collection.anki21")) {
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        zis.transferTo(baos);
-                        result21 = baos.toByteArray();
-                        break;
-                    } else if (entry.getName().equals("collection.anki2")) {
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        zis.transferTo(baos);
-                        result20 = baos.toByteArray();
-                    }
-                    zis.closeEntry();
-                }
-            } catch (java.util.zip.ZipException e) {
-                throw new AnkiException("Invalid APKG file format: Not a valid zip archive", e);
+    /**
+     * Drops indexes from a database file, e.g. a backup about to be exported, and
+     * compacts the file so the dropped pages are not shipped.
+     */
+    public static void dropIndexes(java.nio.file.Path dbFile, java.util.List<String> indexNames) {
+        if (indexNames.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (Connection conn = java.sql.DriverManager.getConnection("jdbc:sqlite:" + dbFile.toAbsolutePath());
+                Statement stmt = conn.createStatement()) {
+            for (String name : indexNames) {
+                stmt.execute("DROP INDEX IF EXISTS \"" + name + "\"");
             }
-            return result21 != null ? result21 : result20;
+            stmt.execute("VACUUM");
+        } catch (SQLException e) {
+            throw new AnkiException("Failed to drop indexes from " + dbFile, e);
+        }
+        logger.info("Dropped {} index(es) from export copy in {} ms", indexNames.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Applies memory-mapping and page cache sizing. A value of 0 keeps the SQLite
+     * default for that setting.
+     */
+    public static void configure(Connection conn, long mmapSize, int cacheSizeKib) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            if (mmapSize > 0) {
+                stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            }
+            if (cacheSizeKib > 0) {
+                // Negative values are interpreted by SQLite as KiB rather than pages
+                stmt.execute("PRAGMA cache_size = -" + cacheSizeKib);
+            }
+        }
+    }
+
+    /**
+     * Locates the collection database inside an APKG archive, preferring
+     * {@code collection.anki21} over the legacy {@code collection.anki2}.
+     *
+     * @return the database entry, or {@code null} if the archive has none
+     */
+    public static ZipEntry findDatabaseEntry(ZipFile zipFile) {
+        ZipEntry entry = zipFile.getEntry("collection.anki21");
+        if (entry == null) {
+            entry = zipFile.getEntry("collection.anki2");
         }
+        return entry;
     }
 }
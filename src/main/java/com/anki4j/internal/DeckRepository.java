@@ -4,102 +4,257 @@ import com.anki4j.exception.AnkiException;
 import com.anki4j.model.Deck;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Decks stored in the {@code col.decks} JSON column.
+ * <p>
+ * The column is parsed once into a JSON tree that is kept in memory. Reads and
+ * mutations work on that tree, and {@link #flush()} writes it back in a single
+ * update, so adding decks does not re-read the column and properties this
+ * library does not model (deck options, today counters, ...) are preserved.
+ * <p>
+ * Decks are also indexed by ID and by name, and by parent for the
+ * {@code Parent::Child} hierarchy, so lookups never touch the JSON. All methods
+ * are synchronized, so the cache can be shared by reader threads.
+ */
 public class DeckRepository {
     private static final Logger logger = LoggerFactory.getLogger(DeckRepository.class);
 
     private final Connection connection;
     private final ObjectMapper objectMapper;
 
+    // Parsed col.decks keyed by deck ID as a string
+    private ObjectNode decksJson;
+    private boolean dirty = false;
+
+    // Deck names by ID, in col.decks order, and IDs by lower-cased name
+    private final Map<Long, String> names = new LinkedHashMap<>();
+    private final Map<String, Long> idsByName = new HashMap<>();
+    // Child deck IDs by parent ID, rebuilt on demand after decks change
+    private Map<Long, List<Long>> children;
+
     public DeckRepository(Connection connection) {
         logger.info("Initializing DeckRepository");
         this.connection = connection;
         this.objectMapper = new ObjectMapper();
+        reload();
     }
 
-    public List<Deck> getDecks() {
-        logger.info("Fetching all decks from 'col' table");
+    /**
+     * Discards the cached decks, including unflushed changes, and parses
+     * {@code col.decks} again.
+     */
+    public synchronized void reload() {
+        decksJson = load();
+        dirty = false;
+        names.clear();
+        idsByName.clear();
+        children = null;
+        Iterator<Map.Entry<String, JsonNode>> fields = decksJson.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            index(Long.parseLong(field.getKey()), field.getValue().path("name").asText());
+        }
+        logger.info("Loaded {} decks", names.size());
+    }
+
+    public synchronized List<Deck> getDecks() {
+        logger.info("Fetching all decks");
+        List<Deck> decks = new ArrayList<>(names.size());
+        for (Map.Entry<Long, String> entry : names.entrySet()) {
+            decks.add(new Deck(entry.getKey(), entry.getValue()));
+        }
+        return decks;
+    }
+
+    public synchronized Optional<Deck> getDeck(long deckId) {
+        String name = names.get(deckId);
+        if (name == null) {
+            logger.debug("Deck not found: {}", deckId);
+            return Optional.empty();
+        }
+        return Optional.of(new Deck(deckId, name));
+    }
+
+    /**
+     * Finds a deck by its full name (e.g. {@code "Languages::French"}), ignoring
+     * case as Anki does.
+     */
+    public synchronized Optional<Deck> getDeckByName(String name) {
+        Long id = name == null ? null : idsByName.get(name.toLowerCase(Locale.ROOT));
+        return id == null ? Optional.empty() : Optional.of(new Deck(id, names.get(id)));
+    }
+
+    /**
+     * Returns the direct children of a deck, in {@code col.decks} order.
+     */
+    public synchronized List<Deck> getChildren(long deckId) {
         List<Deck> decks = new ArrayList<>();
+        for (long childId : children().getOrDefault(deckId, List.of())) {
+            decks.add(new Deck(childId, names.get(childId)));
+        }
+        return decks;
+    }
 
-        try (Statement stmt = connection.createStatement()) {
-            try (ResultSet rs = stmt.executeQuery("SELECT decks FROM col LIMIT 1")) {
-                if (rs.next()) {
-                    String json = rs.getString("decks");
-                    if (json != null && !json.isEmpty()) {
-                        JsonNode root = objectMapper.readTree(json);
-                        Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
-                        while (fields.hasNext()) {
-                            Map.Entry<String, JsonNode> field = fields.next();
-                            long id = Long.parseLong(field.getKey());
-                            String name = field.getValue().get("name").asText();
-                            Deck d = new Deck(id, name);
-                            decks.add(d);
-                        }
-                    }
-                }
+    /**
+     * Returns the IDs of all decks below {@code deckId}, excluding the deck itself.
+     */
+    public synchronized long[] getDescendantIds(long deckId) {
+        Map<Long, List<Long>> tree = children();
+        List<Long> ids = new ArrayList<>();
+        collectDescendants(tree, deckId, ids);
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Rolls per-deck card counts up the deck tree.
+     *
+     * @param directCounts cards filed directly in each deck, as returned by
+     *                     {@link CardRepository#countCardsByDeck()}
+     * @return subtree card counts keyed by deck ID; every known deck is present
+     */
+    public synchronized Map<Long, Long> getSubtreeCardCounts(Map<Long, Long> directCounts) {
+        Map<Long, Long> counts = new LinkedHashMap<>();
+        for (Long id : names.keySet()) {
+            counts.put(id, 0L);
+        }
+        for (Map.Entry<Long, Long> entry : directCounts.entrySet()) {
+            long did = entry.getKey();
+            long count = entry.getValue();
+            counts.merge(did, count, Long::sum);
+            // Add the deck's own cards to every ancestor
+            for (Long parent = parentId(names.get(did)); parent != null; parent = parentId(names.get(parent))) {
+                counts.merge(parent, count, Long::sum);
             }
-            logger.info("Found {} decks", decks.size());
+        }
+        return counts;
+    }
+
+    /**
+     * Adds a deck, or renames it if the ID already exists, keeping its other
+     * properties. The change is written to the database by {@link #flush()}.
+     */
+    public synchronized void addDeck(Deck deck) {
+        logger.info("Adding deck to cached col JSON: {}", deck.getName());
+        String key = String.valueOf(deck.getId());
+        JsonNode existing = decksJson.get(key);
+        ObjectNode node = existing instanceof ObjectNode ? (ObjectNode) existing : newDeckNode();
+        node.put("id", deck.getId());
+        node.put("name", deck.getName());
+        node.put("mod", System.currentTimeMillis() / 1000);
+        node.put("usn", -1);
+        decksJson.set(key, node);
+        dirty = true;
+
+        String previous = names.get(deck.getId());
+        if (previous != null) {
+            idsByName.remove(previous.toLowerCase(Locale.ROOT));
+        }
+        index(deck.getId(), deck.getName());
+        children = null;
+    }
+
+    /**
+     * Writes the cached deck tree to {@code col.decks} if it changed.
+     */
+    public synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        logger.info("Writing {} decks to col JSON", decksJson.size());
+        try (PreparedStatement pstmt = connection.prepareStatement("UPDATE col SET decks = ?")) {
+            pstmt.setString(1, objectMapper.writeValueAsString(decksJson));
+            pstmt.executeUpdate();
+            dirty = false;
         } catch (Exception e) {
-            logger.error("Failed to query decks from col: {}", e.getMessage());
-            throw new AnkiException("Failed to query decks", e);
+            logger.error("Failed to write decks: {}", e.getMessage());
+            throw new AnkiException("Failed to write decks", e);
         }
-        return decks;
     }
 
-    public Optional<Deck> getDeck(long deckId) {
-        logger.info("Fetching deck with ID: {}", deckId);
-        try (Statement stmt = connection.createStatement()) {
-            try (ResultSet rs = stmt.executeQuery("SELECT decks FROM col LIMIT 1")) {
-                if (rs.next()) {
-                    String json = rs.getString("decks");
-                    if (json != null && !json.isEmpty()) {
-                        JsonNode root = objectMapper.readTree(json);
-                        JsonNode deckNode = root.get(String.valueOf(deckId));
-                        if (deckNode != null) {
-                            String name = deckNode.get("name").asText();
-                            Deck d = new Deck(deckId, name);
-                            logger.info("Deck found: {}", deckId);
-                            return Optional.of(d);
-                        }
-                    }
+    private void index(long id, String name) {
+        names.put(id, name);
+        if (name != null) {
+            idsByName.put(name.toLowerCase(Locale.ROOT), id);
+        }
+    }
+
+    private Map<Long, List<Long>> children() {
+        if (children == null) {
+            Map<Long, List<Long>> tree = new HashMap<>();
+            for (Map.Entry<Long, String> entry : names.entrySet()) {
+                Long parent = parentId(entry.getValue());
+                if (parent != null) {
+                    tree.computeIfAbsent(parent, k -> new ArrayList<>()).add(entry.getKey());
                 }
             }
-            logger.info("Deck not found: {}", deckId);
-        } catch (Exception e) {
-            logger.error("Failed to query deck by ID {}: {}", deckId, e.getMessage());
-            throw new AnkiException("Failed to query deck by id: " + deckId, e);
+            children = tree;
         }
-        return Optional.empty();
+        return children;
     }
 
-    public void addDeck(Deck deck) {
-        logger.info("Adding deck to col JSON: {}", deck.getName());
-        try {
-            Map<Long, Deck> decks = new java.util.HashMap<>();
-            for (Deck d : getDecks()) {
-                decks.put(d.getId(), d);
-            }
-            decks.put(deck.getId(), deck);
+    private static void collectDescendants(Map<Long, List<Long>> tree, long deckId, List<Long> out) {
+        for (long child : tree.getOrDefault(deckId, List.of())) {
+            out.add(child);
+            collectDescendants(tree, child, out);
+        }
+    }
+
+    /**
+     * Returns the ID of the deck named like {@code name} without its last
+     * component, or null for a top-level deck or a parent that does not exist.
+     */
+    private Long parentId(String name) {
+        int separator = name == null ? -1 : name.lastIndexOf("::");
+        return separator < 0 ? null : idsByName.get(name.substring(0, separator).toLowerCase(Locale.ROOT));
+    }
 
-            String json = objectMapper.writeValueAsString(decks);
-            String sql = "UPDATE col SET decks = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, json);
-                pstmt.executeUpdate();
+    private ObjectNode load() {
+        logger.info("Loading decks from 'col' table");
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT decks FROM col LIMIT 1")) {
+            if (rs.next()) {
+                String json = rs.getString("decks");
+                if (json != null && !json.isEmpty()) {
+                    JsonNode root = objectMapper.readTree(json);
+                    if (root instanceof ObjectNode) {
+                        return (ObjectNode) root;
+                    }
+                }
             }
+            return objectMapper.createObjectNode();
         } catch (Exception e) {
-            logger.error("Failed to add deck: {}", e.getMessage());
-            throw new AnkiException("Failed to add deck", e);
+            logger.error("Failed to query decks from col: {}", e.getMessage());
+            throw new AnkiException("Failed to query decks", e);
         }
     }
 
+    // Properties Anki expects on every normal deck
+    private ObjectNode newDeckNode() {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("desc", "");
+        node.put("dyn", 0);
+        node.put("conf", 1);
+        node.put("collapsed", false);
+        node.put("browserCollapsed", false);
+        node.put("extendNew", 0);
+        node.put("extendRev", 0);
+        for (String counter : new String[] { "newToday", "revToday", "lrnToday", "timeToday" }) {
+            node.putArray(counter).add(0).add(0);
+        }
+        return node;
+    }
 }
@@ -0,0 +1,101 @@
+package com.anki4j.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Computes the {@code sfld} and {@code csum} columns of a note the way Anki
+ * does: from the field text with HTML removed and media file names kept.
+ */
+public final class FieldChecksum {
+    private static final Pattern STYLE = Pattern.compile("(?si)<style.*?>.*?</style>");
+    private static final Pattern SCRIPT = Pattern.compile("(?si)<script.*?>.*?</script>");
+    private static final Pattern IMG = Pattern.compile("(?i)<img[^>]+src=[\"']?([^\"'>]+)[\"']?[^>]*>");
+    private static final Pattern TAG = Pattern.compile("(?s)<.*?>");
+    private static final Pattern ENTITY = Pattern.compile("&(#\\d+|#x[0-9a-fA-F]+|nbsp|amp|lt|gt|quot|apos);");
+
+    private FieldChecksum() {
+    }
+
+    /**
+     * Strips HTML tags from a field value, replacing images by their file name
+     * and decoding common entities.
+     */
+    public static String stripHtml(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        if (value.indexOf('<') < 0 && value.indexOf('&') < 0) {
+            return value.trim();
+        }
+        String text = STYLE.matcher(value).replaceAll("");
+        text = SCRIPT.matcher(text).replaceAll("");
+        text = IMG.matcher(text).replaceAll(" $1 ");
+        text = TAG.matcher(text).replaceAll("");
+        return decodeEntities(text).trim();
+    }
+
+    /**
+     * Returns the first 8 hex digits of the SHA-1 of the stripped field, as Anki
+     * stores in {@code notes.csum} for duplicate detection.
+     */
+    public static long checksum(String firstField) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(stripHtml(firstField).getBytes(StandardCharsets.UTF_8));
+            return ((digest[0] & 0xFFL) << 24) | ((digest[1] & 0xFFL) << 16) | ((digest[2] & 0xFFL) << 8)
+                    | (digest[3] & 0xFFL);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    private static String decodeEntities(String text) {
+        Matcher m = ENTITY.matcher(text);
+        StringBuilder out = new StringBuilder(text.length());
+        while (m.find()) {
+            String entity = m.group(1);
+            String replacement;
+            if (entity.startsWith("#")) {
+                replacement = codePoint(entity, m.group());
+            } else {
+                switch (entity) {
+                    case "nbsp":
+                        replacement = " ";
+                        break;
+                    case "amp":
+                        replacement = "&";
+                        break;
+                    case "lt":
+                        replacement = "<";
+                        break;
+                    case "gt":
+                        replacement = ">";
+                        break;
+                    case "quot":
+                        replacement = "\"";
+                        break;
+                    default:
+                        replacement = "'";
+                        break;
+                }
+            }
+            m.appendReplacement(out, Matcher.quoteReplacement(replacement));
+        }
+        m.appendTail(out);
+        return out.toString();
+    }
+
+    private static String codePoint(String entity, String original) {
+        try {
+            int codePoint = entity.startsWith("#x") ? Integer.parseInt(entity.substring(2), 16)
+                    : Integer.parseInt(entity.substring(1));
+            return new String(Character.toChars(codePoint));
+        } catch (IllegalArgumentException e) {
+            return original; // out of range, kept as written
+        }
+    }
+}
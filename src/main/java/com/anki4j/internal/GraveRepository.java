@@ -10,12 +10,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
-public class GraveRepository {
+public class GraveRepository implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(GraveRepository.class);
     private final Connection connection;
+    private final StatementCache statements;
 
     public GraveRepository(Connection connection) {
         this.connection = connection;
+        this.statements = new StatementCache(connection);
     }
 
     public List<Grave> getAllGraves() {
@@ -37,7 +39,8 @@ public class GraveRepository {
     public Optional<Grave> getGraveByOid(long oid) {
         logger.info("Fetching grave for original ID: {}", oid);
         String sql = "SELECT * FROM graves WHERE oid = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try {
+            PreparedStatement pstmt = statements.prepare(sql);
             pstmt.setLong(1, oid);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -58,4 +61,9 @@ public class GraveRepository {
         g.setType(rs.getInt("type"));
         return g;
     }
+
+    @Override
+    public void close() {
+        statements.close();
+    }
 }
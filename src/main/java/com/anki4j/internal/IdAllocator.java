@@ -0,0 +1,85 @@
+package com.anki4j.internal;
+
+import com.anki4j.exception.AnkiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Hands out note and card IDs and new-card positions for one collection.
+ * <p>
+ * IDs follow Anki's convention of epoch milliseconds but are strictly
+ * increasing, so many rows created in the same millisecond never collide. The
+ * first call seeds the counters from the largest values already stored,
+ * holding the collection's write lock so that it does not read another
+ * thread's uncommitted rows.
+ */
+public class IdAllocator {
+    private static final Logger logger = LoggerFactory.getLogger(IdAllocator.class);
+
+    private final Connection connection;
+    private final Lock writeLock;
+    private long lastId = -1;
+    private long lastPosition = -1;
+
+    public IdAllocator(Connection connection, Lock writeLock) {
+        this.connection = connection;
+        this.writeLock = writeLock;
+    }
+
+    /**
+     * Returns an ID greater than every ID this allocator or the collection has
+     * used, and at least the current time in milliseconds.
+     */
+    public long nextId() {
+        // Seeded outside the monitor: the write lock is always taken first
+        long seed = isSeeded() ? 0 : Math.max(queryMax("SELECT max(id) FROM notes"),
+                queryMax("SELECT max(id) FROM cards"));
+        synchronized (this) {
+            if (lastId < 0) {
+                lastId = seed;
+                logger.info("Seeded ID allocator at {}", lastId);
+            }
+            lastId = Math.max(System.currentTimeMillis(), lastId + 1);
+            return lastId;
+        }
+    }
+
+    /**
+     * Returns the next position in the new-card queue, stored in {@code due}.
+     */
+    public long nextPosition() {
+        long seed = isPositionSeeded() ? 0 : queryMax("SELECT max(due) FROM cards WHERE type = 0");
+        synchronized (this) {
+            if (lastPosition < 0) {
+                lastPosition = seed;
+            }
+            return ++lastPosition;
+        }
+    }
+
+    private synchronized boolean isSeeded() {
+        return lastId >= 0;
+    }
+
+    private synchronized boolean isPositionSeeded() {
+        return lastPosition >= 0;
+    }
+
+    private long queryMax(String sql) {
+        writeLock.lock();
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? Math.max(0, rs.getLong(1)) : 0;
+        } catch (SQLException e) {
+            throw new AnkiException("Failed to read current maximum: " + sql, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
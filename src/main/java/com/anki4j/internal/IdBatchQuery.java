@@ -0,0 +1,132 @@
+package com.anki4j.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a query for many IDs at once instead of one round trip per ID.
+ * <p>
+ * Small sets are split into {@code IN (?, ?, ...)} chunks of a fixed width; the
+ * last chunk is padded with a repeated ID so every chunk reuses the same cached
+ * statement. Very large sets are loaded into a temporary table and joined
+ * instead, which keeps the statement small and lets SQLite probe the primary
+ * key for each ID.
+ */
+public final class IdBatchQuery {
+
+    public static final int CHUNK_SIZE = 500;
+    public static final int TEMP_TABLE_THRESHOLD = 20_000;
+
+    private static final String ID_MARKER = "{ids}";
+    private static final String TEMP_TABLE = "temp.anki4j_batch_ids";
+
+    private IdBatchQuery() {
+    }
+
+    @FunctionalInterface
+    public interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Creates the handler for one result set, e.g. after resolving its column
+     * indexes.
+     */
+    @FunctionalInterface
+    public interface RowHandlerFactory {
+        RowHandler create(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Runs {@code sqlTemplate} for the distinct values of {@code ids}, passing
+     * every row to the handler created for its result set. Rows arrive in no
+     * particular order.
+     *
+     * @param sqlTemplate SQL containing {@code {ids}} where the parenthesised ID
+     *                    list belongs, e.g. {@code SELECT * FROM cards WHERE id IN {ids}}
+     */
+    public static void forEachRow(Connection connection, StatementCache statements, String sqlTemplate,
+            long[] ids, RowHandlerFactory handlers) throws SQLException {
+        long[] distinct = Arrays.stream(ids).distinct().toArray();
+        if (distinct.length == 0) {
+            return;
+        }
+        if (distinct.length >= TEMP_TABLE_THRESHOLD) {
+            forEachRowWithTempTable(connection, statements, sqlTemplate, distinct, handlers);
+            return;
+        }
+
+        String placeholders = "(" + String.join(", ", java.util.Collections.nCopies(CHUNK_SIZE, "?")) + ")";
+        PreparedStatement stmt = statements.prepare(sqlTemplate.replace(ID_MARKER, placeholders));
+        for (int start = 0; start < distinct.length; start += CHUNK_SIZE) {
+            int end = Math.min(start + CHUNK_SIZE, distinct.length);
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                // Pad a partial chunk with its last ID so the statement shape never changes
+                stmt.setLong(i + 1, distinct[Math.min(start + i, end - 1)]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowHandler handler = handlers.create(rs);
+                while (rs.next()) {
+                    handler.handle(rs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Arranges looked-up values in the order of the requested IDs, skipping IDs
+     * that were not found and repeating values for repeated IDs.
+     */
+    public static <T> List<T> inInputOrder(long[] ids, Map<Long, T> byId) {
+        List<T> ordered = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            T value = byId.get(id);
+            if (value != null) {
+                ordered.add(value);
+            }
+        }
+        return ordered;
+    }
+
+    private static void forEachRowWithTempTable(Connection connection, StatementCache statements,
+            String sqlTemplate, long[] ids, RowHandlerFactory handlers) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS anki4j_batch_ids (id INTEGER PRIMARY KEY)");
+            stmt.execute("DELETE FROM " + TEMP_TABLE);
+        }
+
+        Transaction.run(connection, () -> {
+            PreparedStatement insert = statements.prepare("INSERT OR IGNORE INTO " + TEMP_TABLE + " (id) VALUES (?)");
+            for (int i = 0; i < ids.length; i++) {
+                insert.setLong(1, ids[i]);
+                insert.addBatch();
+                if ((i + 1) % CHUNK_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        });
+
+        try {
+            PreparedStatement query = statements.prepare(
+                    sqlTemplate.replace(ID_MARKER, "(SELECT id FROM " + TEMP_TABLE + ")"));
+            try (ResultSet rs = query.executeQuery()) {
+                RowHandler handler = handlers.create(rs);
+                while (rs.next()) {
+                    handler.handle(rs);
+                }
+            }
+        } finally {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("DELETE FROM " + TEMP_TABLE);
+            }
+        }
+    }
+}
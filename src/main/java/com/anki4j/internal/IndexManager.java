@@ -0,0 +1,120 @@
+package com.anki4j.internal;
+
+import com.anki4j.exception.AnkiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the secondary indexes the library's queries rely on. Packages written
+ * by other tools, and the schema from {@link DatabaseManager#initializeSchema},
+ * may lack them.
+ * <p>
+ * Indexes created here are remembered so they can be left out of exported
+ * packages again.
+ */
+public class IndexManager {
+    private static final Logger logger = LoggerFactory.getLogger(IndexManager.class);
+
+    // Study queues: cards of a deck in one queue, in due order
+    public static final String CARDS_SCHED = "CREATE INDEX IF NOT EXISTS ix_cards_sched ON cards (did, queue, due)";
+
+    // The index set Anki itself creates, by name
+    private static final Map<String, String> STANDARD_INDEXES = new LinkedHashMap<>();
+
+    static {
+        STANDARD_INDEXES.put("ix_notes_usn", "CREATE INDEX IF NOT EXISTS ix_notes_usn ON notes (usn)");
+        STANDARD_INDEXES.put("ix_cards_usn", "CREATE INDEX IF NOT EXISTS ix_cards_usn ON cards (usn)");
+        STANDARD_INDEXES.put("ix_revlog_usn", "CREATE INDEX IF NOT EXISTS ix_revlog_usn ON revlog (usn)");
+        STANDARD_INDEXES.put("ix_cards_nid", "CREATE INDEX IF NOT EXISTS ix_cards_nid ON cards (nid)");
+        STANDARD_INDEXES.put("ix_cards_sched", CARDS_SCHED);
+        STANDARD_INDEXES.put("ix_revlog_cid", "CREATE INDEX IF NOT EXISTS ix_revlog_cid ON revlog (cid)");
+        STANDARD_INDEXES.put("ix_notes_csum", "CREATE INDEX IF NOT EXISTS ix_notes_csum ON notes (csum)");
+    }
+
+    private final Connection connection;
+    private final List<String> createdIndexes = new ArrayList<>();
+    private boolean schedulingIndexEnsured = false;
+
+    public IndexManager(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Creates every missing index of Anki's standard set, logging the time each
+     * one takes to build.
+     */
+    public synchronized void createStandardIndexes() {
+        logger.info("Creating standard indexes");
+        long start = System.nanoTime();
+        int created = 0;
+        for (Map.Entry<String, String> index : STANDARD_INDEXES.entrySet()) {
+            if (ensureIndex(index.getKey(), index.getValue())) {
+                created++;
+            }
+        }
+        schedulingIndexEnsured = true;
+        logger.info("Created {} of {} standard indexes in {} ms", created, STANDARD_INDEXES.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Creates {@code ix_cards_sched} unless it exists; checked once per session.
+     */
+    public synchronized void ensureSchedulingIndex() {
+        if (!schedulingIndexEnsured) {
+            ensureIndex("ix_cards_sched", CARDS_SCHED);
+            schedulingIndexEnsured = true;
+        }
+    }
+
+    /**
+     * @return names of the indexes this session added to the database
+     */
+    public synchronized List<String> getCreatedIndexes() {
+        return List.copyOf(createdIndexes);
+    }
+
+    /**
+     * Creates an index unless one with that name exists.
+     *
+     * @return {@code true} if the index was created
+     */
+    private boolean ensureIndex(String name, String ddl) {
+        try {
+            if (indexExists(name)) {
+                logger.debug("Index {} already exists", name);
+                return false;
+            }
+            long start = System.nanoTime();
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(ddl);
+            }
+            createdIndexes.add(name);
+            logger.info("Created index {} in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (SQLException e) {
+            logger.error("Failed to create index {}: {}", name, e.getMessage());
+            throw new AnkiException("Failed to create index " + name, e);
+        }
+    }
+
+    private boolean indexExists(String name) throws SQLException {
+        String sql = "SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.anki4j.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of media blobs bounded by their total size in bytes.
+ */
+public class MediaCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    public MediaCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized byte[] get(String key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(String key, byte[] content) {
+        if (content.length > maxBytes) {
+            return;
+        }
+        byte[] previous = entries.put(key, content);
+        if (previous != null) {
+            currentBytes -= previous.length;
+        }
+        currentBytes += content.length;
+
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, byte[]> eldest = it.next();
+            currentBytes -= eldest.getValue().length;
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized long sizeInBytes() {
+        return currentBytes;
+    }
+}
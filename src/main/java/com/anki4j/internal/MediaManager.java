@@ -6,59 +6,89 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.util.zip.ZipFile;
 
-public class MediaManager {
+public class MediaManager implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(MediaManager.class);
 
-    private final Map<String, String> filenameToZipName = new HashMap<>();
-    private final Map<String, byte[]> zipEntryBytes = new HashMap<>();
+    private final Map<String, String> filenameToZipName = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> zipEntryBytes = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper;
 
+    // Lazy mode: entries stay in the archive and are inflated on demand
+    private final Map<String, ZipEntry> lazyEntries = new ConcurrentHashMap<>();
+    // Media added during a transaction as {filename, previous zip name, new zip name}
+    private List<String[]> changes;
+    private ZipFile zipFile;
+    private MediaCache cache;
+
     public MediaManager() {
         logger.info("Initializing MediaManager");
         this.objectMapper = new ObjectMapper();
     }
 
     /**
-     * Parses the 'media' JSON file and loads all media content into memory.
+     * Parses the 'media' JSON file and loads the media it references into memory.
+     * Entries are looked up by name through the archive's central directory, so
+     * the collection database is never inflated here.
      */
-    public void load(byte[] zipData) throws IOException {
-        logger.info("Loading media map and content from zip data");
-
-        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipData))) {
-            ZipEntry entry;
-            byte[] mediaJsonBytes = null;
-
-            while ((entry = zis.getNextEntry()) != null) {
-                String name = entry.getName();
-
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                zis.transferTo(baos);
-                byte[] content = baos.toByteArray();
-
-                if (name.equals("media")) {
-                    mediaJsonBytes = content;
-                } else {
-                    zipEntryBytes.put(name, content);
-                }
-                zis.closeEntry();
+    public void load(ZipFile zipFile) throws IOException {
+        logger.info("Loading media map and content from {}", zipFile.getName());
+        if (!loadIndex(zipFile)) {
+            return;
+        }
+        for (String zipName : filenameToZipName.values()) {
+            ZipEntry entry = zipFile.getEntry(zipName);
+            if (entry != null) {
+                zipEntryBytes.put(zipName, inflate(zipFile, entry));
             }
+        }
+        logger.info("Loaded {} media mappings.", filenameToZipName.size());
+    }
 
-            if (mediaJsonBytes == null) {
-                logger.warn("No 'media' file found in the archive.");
-                return;
+    /**
+     * Parses only the 'media' JSON file and keeps the archive open. Media entries
+     * are inflated when first requested and kept in an LRU cache holding at most
+     * {@code cacheBytes} bytes.
+     * <p>
+     * The archive is closed by {@link #close()}.
+     */
+    public void loadLazily(ZipFile zipFile, long cacheBytes) throws IOException {
+        logger.info("Loading media map from {} (lazy, cache limit {} bytes)", zipFile.getName(), cacheBytes);
+        this.zipFile = zipFile;
+        this.cache = new MediaCache(cacheBytes);
+        if (!loadIndex(zipFile)) {
+            return;
+        }
+        for (String zipName : filenameToZipName.values()) {
+            ZipEntry entry = zipFile.getEntry(zipName);
+            if (entry != null) {
+                lazyEntries.put(zipName, entry);
             }
+        }
+        logger.info("Indexed {} media mappings.", filenameToZipName.size());
+    }
 
-            JsonNode root = objectMapper.readTree(mediaJsonBytes);
+    private boolean loadIndex(ZipFile zipFile) throws IOException {
+        ZipEntry mediaEntry = zipFile.getEntry("media");
+        if (mediaEntry == null) {
+            logger.warn("No 'media' file found in the archive.");
+            return false;
+        }
+
+        try (InputStream in = zipFile.getInputStream(mediaEntry)) {
+            JsonNode root = objectMapper.readTree(in);
             Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
             while (fields.hasNext()) {
                 Map.Entry<String, JsonNode> field = fields.next();
@@ -70,11 +100,17 @@ public class MediaManager {
             logger.error("Failed to parse media map: {}", e.getMessage());
             throw new IOException("Failed to parse media map", e);
         }
-        logger.info("Loaded {} media mappings.", filenameToZipName.size());
+        return true;
+    }
+
+    private static byte[] inflate(ZipFile zipFile, ZipEntry entry) throws IOException {
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            return in.readAllBytes();
+        }
     }
 
     public String getZipEntryName(String filename) {
-        return filenameToZipName.get(filename);
+        return filename == null ? null : filenameToZipName.get(filename);
     }
 
     /**
@@ -85,13 +121,13 @@ public class MediaManager {
      */
     public Optional<byte[]> getMediaContent(String filename) {
         logger.info("Retrieving media content: {}", filename);
-        String zipName = filenameToZipName.get(filename);
+        String zipName = getZipEntryName(filename);
         if (zipName == null) {
             logger.info("Media mapping not found for: {}", filename);
             return Optional.empty();
         }
 
-        byte[] content = zipEntryBytes.get(zipName);
+        byte[] content = readEntry(zipName, true);
         if (content == null) {
             logger.info("Zip entry content '{}' not found for media '{}'", zipName, filename);
             return Optional.empty();
@@ -101,8 +137,75 @@ public class MediaManager {
         return Optional.of(content);
     }
 
-    public Map<String, byte[]> getAllMediaEntries() {
-        return Collections.unmodifiableMap(zipEntryBytes);
+    /**
+     * Reads the content stored under a zip entry name, inflating it from the
+     * archive in lazy mode.
+     *
+     * @param cacheResult whether a lazily inflated blob should be kept in the LRU
+     *                    cache; bulk readers such as export pass {@code false}
+     * @return the content, or {@code null} if there is no such entry
+     */
+    public byte[] readEntry(String zipName, boolean cacheResult) {
+        byte[] content = zipEntryBytes.get(zipName);
+        if (content != null) {
+            return content;
+        }
+
+        ZipEntry entry = lazyEntries.get(zipName);
+        if (entry == null) {
+            return null;
+        }
+
+        content = cache.get(zipName);
+        if (content != null) {
+            return content;
+        }
+
+        try {
+            content = inflate(zipFile, entry);
+        } catch (IOException e) {
+            throw new com.anki4j.exception.AnkiException("Failed to read media entry " + zipName, e);
+        }
+        if (cacheResult) {
+            cache.put(zipName, content);
+        }
+        return content;
+    }
+
+    /**
+     * Opens a stream over the content stored under a zip entry name without
+     * caching it. Lazily indexed entries are inflated straight from the archive.
+     *
+     * @return the stream, or {@code null} if there is no such entry
+     */
+    public InputStream openEntry(String zipName) throws IOException {
+        byte[] content = zipEntryBytes.get(zipName);
+        if (content != null) {
+            return new java.io.ByteArrayInputStream(content);
+        }
+        ZipEntry entry = lazyEntries.get(zipName);
+        if (entry == null) {
+            return null;
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * @return The entry in the source archive backing a lazily indexed media
+     *         file, or {@code null} if the content is held in memory.
+     */
+    public ZipEntry getSourceEntry(String zipName) {
+        return zipEntryBytes.containsKey(zipName) ? null : lazyEntries.get(zipName);
+    }
+
+    /**
+     * @return Names of all zip entries holding media content, whether loaded or
+     *         still in the archive.
+     */
+    public Set<String> getMediaZipNames() {
+        Set<String> names = new LinkedHashSet<>(lazyEntries.keySet());
+        names.addAll(zipEntryBytes.keySet());
+        return Collections.unmodifiableSet(names);
     }
 
     public Map<String, String> getFilenameToZipName() {
@@ -123,7 +226,56 @@ public class MediaManager {
             }
         }
         String nextZipName = String.valueOf(maxZipName + 1);
-        filenameToZipName.put(filename, nextZipName);
+        String previous = filenameToZipName.put(filename, nextZipName);
         zipEntryBytes.put(nextZipName, content);
+        if (changes != null) {
+            changes.add(new String[] { filename, previous, nextZipName });
+        }
+    }
+
+    /**
+     * Starts recording added media so that {@link #rollbackChanges()} can undo it.
+     */
+    public void beginChanges() {
+        changes = new ArrayList<>();
+    }
+
+    public void commitChanges() {
+        changes = null;
+    }
+
+    /**
+     * Removes the media added since {@link #beginChanges()}, newest first.
+     */
+    public void rollbackChanges() {
+        if (changes == null) {
+            return;
+        }
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            String[] change = changes.get(i);
+            zipEntryBytes.remove(change[2]);
+            if (change[1] != null) {
+                filenameToZipName.put(change[0], change[1]);
+            } else {
+                filenameToZipName.remove(change[0]);
+            }
+        }
+        logger.info("Discarded {} added media files", changes.size());
+        changes = null;
+    }
+
+    @Override
+    public void close() {
+        if (zipFile == null) {
+            return;
+        }
+        try {
+            zipFile.close();
+        } catch (IOException e) {
+            logger.error("Failed to close media archive: {}", e.getMessage());
+        }
+        zipFile = null;
+        lazyEntries.clear();
+        cache.clear();
     }
 }
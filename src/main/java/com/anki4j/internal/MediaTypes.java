@@ -0,0 +1,112 @@
+package com.anki4j.internal;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Detects media formats that are already compressed, where deflating again
+ * costs CPU without reducing size.
+ */
+public final class MediaTypes {
+
+    /** Number of leading bytes needed by {@link #isCompressedContent(byte[], int)}. */
+    public static final int SNIFF_LENGTH = 12;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "jpg", "jpeg", "png", "gif", "webp", "avif", "heic",
+            "mp3", "ogg", "oga", "opus", "m4a", "aac", "flac",
+            "mp4", "m4v", "webm", "mkv", "mov",
+            "zip", "gz", "7z", "woff", "woff2");
+
+    private MediaTypes() {
+    }
+
+    public static boolean hasCompressedExtension(String filename) {
+        if (filename == null) {
+            return false;
+        }
+        int dot = filename.lastIndexOf('.');
+        if (dot < 0 || dot == filename.length() - 1) {
+            return false;
+        }
+        return COMPRESSED_EXTENSIONS.contains(filename.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Checks the magic bytes at the start of a file.
+     *
+     * @param header the first bytes of the file
+     * @param length number of valid bytes in {@code header}
+     */
+    public static boolean isCompressedContent(byte[] header, int length) {
+        if (length >= 3 && u(header[0]) == 0xFF && u(header[1]) == 0xD8 && u(header[2]) == 0xFF) {
+            return true; // JPEG
+        }
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G')) {
+            return true;
+        }
+        if (startsWith(header, length, 'G', 'I', 'F', '8')) {
+            return true;
+        }
+        if (startsWith(header, length, 'O', 'g', 'g', 'S')) {
+            return true;
+        }
+        if (startsWith(header, length, 'f', 'L', 'a', 'C')) {
+            return true;
+        }
+        if (startsWith(header, length, 'I', 'D', '3')) {
+            return true; // MP3 with ID3 tag
+        }
+        if (length >= 3 && u(header[0]) == 0xFF && (u(header[1]) & 0xE0) == 0xE0) {
+            return isMpegAudioHeader(u(header[1]), u(header[2])); // MPEG audio frame sync (MP3/AAC)
+        }
+        if (startsWith(header, length, 'R', 'I', 'F', 'F') && length >= 12
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return true;
+        }
+        if (length >= 8 && header[4] == 'f' && header[5] == 't' && header[6] == 'y' && header[7] == 'p') {
+            return true; // ISO base media: MP4, M4A, MOV, AVIF, HEIC
+        }
+        if (startsWith(header, length, 0x1A, 0x45, 0xDF, 0xA3)) {
+            return true; // Matroska / WebM
+        }
+        if (startsWith(header, length, 'P', 'K', 0x03, 0x04)) {
+            return true;
+        }
+        return startsWith(header, length, 0x1F, 0x8B);
+    }
+
+    /**
+     * Checks the fields after the frame sync, so that e.g. a UTF-16LE byte order
+     * mark ({@code FF FE}) is not taken for audio.
+     */
+    private static boolean isMpegAudioHeader(int b1, int b2) {
+        int version = (b1 >> 3) & 0x3;
+        int layer = (b1 >> 1) & 0x3;
+        if (layer == 0) {
+            // AAC ADTS: 12-bit sync, then a sampling frequency index below 13
+            return (b1 & 0xF0) == 0xF0 && ((b2 >> 2) & 0xF) < 13;
+        }
+        // Layer I (FF FE / FF FF) is practically unused and collides with BOMs
+        if (version == 0x1 || layer == 0x3) {
+            return false;
+        }
+        return (b2 >> 4) != 0xF && ((b2 >> 2) & 0x3) != 0x3;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (u(header[i]) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u(byte b) {
+        return b & 0xFF;
+    }
+}
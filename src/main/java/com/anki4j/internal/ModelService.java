@@ -12,15 +12,16 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ModelService {
     private static final Logger logger = LoggerFactory.getLogger(ModelService.class);
 
-    private final Map<Long, Model> modelCache = new HashMap<>();
+    // Replaced as a whole on reload so that readers never see it half-filled
+    private volatile Map<Long, Model> modelCache;
     private final ObjectMapper objectMapper;
     private final Connection connection;
 
@@ -28,11 +29,19 @@ public class ModelService {
         logger.info("Initializing ModelService");
         this.connection = connection;
         this.objectMapper = new ObjectMapper();
-        loadModels(connection);
+        this.modelCache = loadModels(connection);
     }
 
-    private void loadModels(Connection connection) {
+    /**
+     * Discards the cached models and loads them from {@code col.models} again.
+     */
+    public void reload() {
+        modelCache = loadModels(connection);
+    }
+
+    private Map<Long, Model> loadModels(Connection connection) {
         logger.info("Loading models from database");
+        Map<Long, Model> models = new ConcurrentHashMap<>();
         try (Statement stmt = connection.createStatement();
                 ResultSet rs = stmt.executeQuery("SELECT models FROM col LIMIT 1")) {
 
@@ -49,7 +58,7 @@ public class ModelService {
                             if (model.getId() == 0) {
                                 model.setId(id);
                             }
-                            modelCache.put(id, model);
+                            models.put(id, model);
                         }
                     } catch (JsonProcessingException e) {
                         logger.error("Failed to parse models JSON: {}", e.getMessage());
@@ -57,7 +66,8 @@ public class ModelService {
                     }
                 }
             }
-            logger.info("Loaded {} models into cache", modelCache.size());
+            logger.info("Loaded {} models into cache", models.size());
+            return models;
         } catch (SQLException e) {
             logger.error("Failed to load models from database: {}", e.getMessage());
             throw new AnkiException("Failed to load models from database", e);
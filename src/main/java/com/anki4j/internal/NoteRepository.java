@@ -6,28 +6,39 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-public class NoteRepository {
+public class NoteRepository implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(NoteRepository.class);
 
+    public static final String INSERT_SQL = "INSERT INTO notes "
+            + "(id, guid, mid, mod, usn, tags, flds, sfld, csum, flags, data) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     private final Connection connection;
     private final CardRepository cardRepository;
+    private final StatementCache statements;
 
     public NoteRepository(Connection connection, CardRepository cardRepository) {
         logger.info("Initializing NoteRepository");
         this.connection = connection;
         this.cardRepository = cardRepository;
+        this.statements = new StatementCache(connection);
     }
 
     public java.util.List<Note> getNotes() {
         logger.info("Fetching all notes");
         java.util.List<Note> notes = new java.util.ArrayList<>();
         String sql = "SELECT * FROM notes";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try {
+            PreparedStatement stmt = statements.prepare(sql);
             try (ResultSet rs = stmt.executeQuery()) {
+                NoteColumns columns = new NoteColumns(rs);
                 while (rs.next()) {
-                    notes.add(mapResultSetToNote(rs));
+                    notes.add(columns.read(rs, new Note()));
                 }
             }
         } catch (SQLException e) {
@@ -37,14 +48,55 @@ public class NoteRepository {
         return notes;
     }
 
+    /**
+     * Streams notes from a live cursor instead of materializing them.
+     *
+     * @param modelId model (note type) to filter by, or -1 for all notes
+     * @return a stream that must be closed if not consumed to the end
+     */
+    public Stream<Note> streamNotes(long modelId, int fetchSize) {
+        logger.info("Streaming notes for model ID: {}", modelId);
+        return RowStream.of(prepareNoteQuery(modelId), fetchSize, NoteColumns.newRows());
+    }
+
+    /**
+     * Passes every note to {@code action} using one reused {@link Note}
+     * instance. The note must not be kept after {@code action} returns.
+     *
+     * @param modelId model (note type) to filter by, or -1 for all notes
+     */
+    public void scanNotes(long modelId, int fetchSize, Consumer<? super Note> action) {
+        logger.info("Scanning notes for model ID: {}", modelId);
+        RowStream.scan(prepareNoteQuery(modelId), fetchSize, NoteColumns.reusedRow(), action);
+    }
+
+    // Unlike cached statements, the returned statement belongs to the caller
+    private PreparedStatement prepareNoteQuery(long modelId) {
+        String sql = "SELECT * FROM notes";
+        if (modelId != -1) {
+            sql += " WHERE mid = ?";
+        }
+        try {
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            if (modelId != -1) {
+                stmt.setLong(1, modelId);
+            }
+            return stmt;
+        } catch (SQLException e) {
+            logger.error("Failed to prepare note query: {}", e.getMessage());
+            throw new AnkiException("Failed to prepare note query", e);
+        }
+    }
+
     public Optional<Note> getNote(long noteId) {
         logger.info("Fetching note with ID: {}", noteId);
         String sql = "SELECT * FROM notes WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try {
+            PreparedStatement stmt = statements.prepare(sql);
             stmt.setLong(1, noteId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Note note = mapResultSetToNote(rs);
+                    Note note = new NoteColumns(rs).read(rs, new Note());
                     logger.info("Note found: {}", noteId);
                     return Optional.of(note);
                 }
@@ -57,20 +109,85 @@ public class NoteRepository {
         return Optional.empty();
     }
 
-    private Note mapResultSetToNote(ResultSet rs) throws SQLException {
-        Note note = new Note();
-        note.setId(rs.getLong("id"));
-        note.setGuid(rs.getString("guid"));
-        note.setMid(rs.getLong("mid"));
-        note.setMod(rs.getLong("mod"));
-        note.setUsn(rs.getInt("usn"));
-        note.setTags(rs.getString("tags"));
-        note.setFlds(rs.getString("flds"));
-        note.setSfld(rs.getString("sfld"));
-        note.setCsum(rs.getLong("csum"));
-        note.setFlags(rs.getInt("flags"));
-        note.setData(rs.getString("data"));
-        return note;
+    /**
+     * Fetches many notes with chunked {@code IN} queries.
+     *
+     * @return the notes found, in the order of {@code noteIds}; unknown IDs are
+     *         skipped
+     */
+    public java.util.List<Note> getNotesByIds(long[] noteIds) {
+        logger.info("Fetching {} notes by ID", noteIds.length);
+        java.util.Map<Long, Note> byId = new java.util.HashMap<>();
+        try {
+            IdBatchQuery.forEachRow(connection, statements, "SELECT * FROM notes WHERE id IN {ids}", noteIds,
+                    rs -> {
+                        NoteColumns columns = new NoteColumns(rs);
+                        return row -> {
+                            Note note = columns.read(row, new Note());
+                            byId.put(note.getId(), note);
+                        };
+                    });
+        } catch (SQLException e) {
+            logger.error("Failed to query notes by IDs: {}", e.getMessage());
+            throw new AnkiException("Failed to query notes by ids", e);
+        }
+        return IdBatchQuery.inInputOrder(noteIds, byId);
+    }
+
+    /**
+     * Fetches the notes of many cards with a join on {@code cards.nid}.
+     *
+     * @return one note per card found, in the order of {@code cardIds}; cards
+     *         sharing a note yield the same instance
+     */
+    public java.util.List<Note> getNotesForCards(long[] cardIds) {
+        logger.info("Fetching notes for {} cards", cardIds.length);
+        java.util.Map<Long, Note> byCardId = new java.util.HashMap<>();
+        java.util.Map<Long, Note> byNoteId = new java.util.HashMap<>();
+        String sql = "SELECT c.id AS card_id, n.* FROM cards c JOIN notes n ON n.id = c.nid WHERE c.id IN {ids}";
+        try {
+            IdBatchQuery.forEachRow(connection, statements, sql, cardIds, rs -> {
+                NoteColumns columns = new NoteColumns(rs);
+                int cardId = rs.findColumn("card_id");
+                int id = rs.findColumn("id");
+                return row -> {
+                    long noteId = row.getLong(id);
+                    Note note = byNoteId.get(noteId);
+                    if (note == null) {
+                        note = columns.read(row, new Note());
+                        byNoteId.put(noteId, note);
+                    }
+                    byCardId.put(row.getLong(cardId), note);
+                };
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to query notes for cards: {}", e.getMessage());
+            throw new AnkiException("Failed to query notes for cards", e);
+        }
+        return IdBatchQuery.inInputOrder(cardIds, byCardId);
+    }
+
+    /**
+     * Fetches the notes of every card in a deck with a single join.
+     */
+    public java.util.List<Note> getNotesInDeck(long deckId) {
+        logger.info("Fetching notes for deck ID: {}", deckId);
+        java.util.List<Note> notes = new java.util.ArrayList<>();
+        String sql = "SELECT n.* FROM notes n JOIN (SELECT DISTINCT nid FROM cards WHERE did = ?) c ON c.nid = n.id";
+        try {
+            PreparedStatement stmt = statements.prepare(sql);
+            stmt.setLong(1, deckId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                NoteColumns columns = new NoteColumns(rs);
+                while (rs.next()) {
+                    notes.add(columns.read(rs, new Note()));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to query notes for deck {}: {}", deckId, e.getMessage());
+            throw new AnkiException("Failed to query notes for deck: " + deckId, e);
+        }
+        return notes;
     }
 
     public Optional<Note> getNoteFromCard(long cardId) {
@@ -81,23 +198,124 @@ public class NoteRepository {
 
     public void addNote(Note note) {
         logger.info("Adding note to database: {}", note.getId());
-        String sql = "INSERT INTO notes (id, guid, mid, mod, usn, tags, flds, sfld, csum, flags, data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, note.getId());
-            pstmt.setString(2, note.getGuid());
-            pstmt.setLong(3, note.getMid());
-            pstmt.setLong(4, note.getMod() == 0 ? System.currentTimeMillis() / 1000 : note.getMod());
-            pstmt.setInt(5, note.getUsn());
-            pstmt.setString(6, note.getTags() == null ? "" : note.getTags());
-            pstmt.setString(7, note.getFlds());
-            pstmt.setString(8, note.getSfld() == null ? "" : note.getSfld());
-            pstmt.setLong(9, note.getCsum());
-            pstmt.setInt(10, note.getFlags());
-            pstmt.setString(11, note.getData() == null ? "" : note.getData());
+        try {
+            PreparedStatement pstmt = statements.prepare(INSERT_SQL);
+            bindInsert(pstmt, note);
             pstmt.executeUpdate();
         } catch (SQLException e) {
             logger.error("Failed to add note: {}", e.getMessage());
             throw new AnkiException("Failed to add note", e);
         }
     }
+
+    /**
+     * Inserts notes with JDBC batches of {@code batchSize} rows, all in one
+     * transaction (or in the caller's, if one is open).
+     */
+    public void addNotes(Collection<Note> notes, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        logger.info("Adding {} notes to database in batches of {}", notes.size(), batchSize);
+        long start = System.currentTimeMillis();
+        try {
+            Transaction.run(connection, () -> {
+                PreparedStatement pstmt = statements.prepare(INSERT_SQL);
+                pstmt.clearBatch(); // in case a failed call left rows behind
+                int pending = 0;
+                for (Note note : notes) {
+                    bindInsert(pstmt, note);
+                    pstmt.addBatch();
+                    if (++pending == batchSize) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    pstmt.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to add notes: {}", e.getMessage());
+            throw new AnkiException("Failed to add notes", e);
+        }
+        logger.info("Added {} notes in {} ms", notes.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Binds the parameters of {@link #INSERT_SQL} for one note.
+     */
+    public static void bindInsert(PreparedStatement stmt, Note note) throws SQLException {
+        stmt.setLong(1, note.getId());
+        stmt.setString(2, note.getGuid());
+        stmt.setLong(3, note.getMid());
+        stmt.setLong(4, note.getMod() == 0 ? System.currentTimeMillis() / 1000 : note.getMod());
+        stmt.setInt(5, note.getUsn());
+        stmt.setString(6, note.getTags() == null ? "" : note.getTags());
+        stmt.setString(7, note.getFlds());
+        stmt.setString(8, note.getSfld() == null ? "" : note.getSfld());
+        stmt.setLong(9, note.getCsum());
+        stmt.setInt(10, note.getFlags());
+        stmt.setString(11, note.getData() == null ? "" : note.getData());
+    }
+
+    @Override
+    public void close() {
+        statements.close();
+    }
+
+    /**
+     * Column indexes of a note result set, resolved once so rows are read by
+     * position instead of by name.
+     */
+    private static final class NoteColumns {
+        private final int id, guid, mid, mod, usn, tags, flds, sfld, csum, flags, data;
+
+        NoteColumns(ResultSet rs) throws SQLException {
+            id = rs.findColumn("id");
+            guid = rs.findColumn("guid");
+            mid = rs.findColumn("mid");
+            mod = rs.findColumn("mod");
+            usn = rs.findColumn("usn");
+            tags = rs.findColumn("tags");
+            flds = rs.findColumn("flds");
+            sfld = rs.findColumn("sfld");
+            csum = rs.findColumn("csum");
+            flags = rs.findColumn("flags");
+            data = rs.findColumn("data");
+        }
+
+        Note read(ResultSet rs, Note note) throws SQLException {
+            note.setId(rs.getLong(id));
+            note.setGuid(rs.getString(guid));
+            note.setMid(rs.getLong(mid));
+            note.setMod(rs.getLong(mod));
+            note.setUsn(rs.getInt(usn));
+            note.setTags(rs.getString(tags));
+            note.setFlds(rs.getString(flds));
+            note.setSfld(rs.getString(sfld));
+            note.setCsum(rs.getLong(csum));
+            note.setFlags(rs.getInt(flags));
+            note.setData(rs.getString(data));
+            note.setDirty(false); // setFlds marks it
+            return note;
+        }
+
+        /** Maps every row to a new Note. */
+        static RowStream.RowMapperFactory<Note> newRows() {
+            return rs -> {
+                NoteColumns columns = new NoteColumns(rs);
+                return row -> columns.read(row, new Note());
+            };
+        }
+
+        /** Maps every row into the same Note instance. */
+        static RowStream.RowMapperFactory<Note> reusedRow() {
+            return rs -> {
+                NoteColumns columns = new NoteColumns(rs);
+                Note note = new Note();
+                return row -> columns.read(row, note);
+            };
+        }
+    }
 }
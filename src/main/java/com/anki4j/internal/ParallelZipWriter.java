@@ -0,0 +1,428 @@
+package com.anki4j.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * {@link ZipSink} that deflates entries on an {@link Executor} while writing
+ * them to the archive in submission order.
+ * <p>
+ * Every deflated entry is split into fixed-size chunks. Each chunk is
+ * compressed independently into a raw deflate segment that ends on a byte
+ * boundary (sync flush), primed with the previous 32 KiB of input as a preset
+ * dictionary; the segments concatenate into one valid deflate stream. Chunks
+ * of consecutive entries share one bounded in-flight window, so a deck with
+ * many small media files is compressed as concurrently as one large database.
+ * <p>
+ * Deflated entries are written with a trailing data descriptor since their
+ * compressed size is only known once the last chunk completes. Sizes and
+ * offsets beyond 4 GiB and more than 65535 entries use the ZIP64 extensions.
+ */
+class ParallelZipWriter implements ZipSink {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int END_SIG = 0x06054b50;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int ZIP64_EXTRA_TAG = 0x0001;
+
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final CountingOutputStream out;
+    private final Executor executor;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final int dosTime;
+
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private final List<EntryRecord> entries = new ArrayList<>();
+    private int inFlight;
+
+    ParallelZipWriter(OutputStream out, Executor executor, int chunkSize, int maxInFlight) {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.dosTime = toDosTime(LocalDateTime.now());
+    }
+
+    @Override
+    public void putDeflated(String name, InputStream in, int level) throws IOException {
+        EntryRecord entry = new EntryRecord(name, METHOD_DEFLATED);
+        enqueue(new Pending(entry, null));
+
+        CRC32 crc = new CRC32();
+        byte[] dictionary = null;
+        byte[] chunk = in.readNBytes(chunkSize);
+        while (true) {
+            crc.update(chunk, 0, chunk.length);
+            entry.size += chunk.length;
+
+            byte[] next = chunk.length < chunkSize ? new byte[0] : in.readNBytes(chunkSize);
+            boolean last = next.length == 0;
+
+            byte[] input = chunk;
+            byte[] dict = dictionary;
+            CompletableFuture<byte[]> segment = CompletableFuture.supplyAsync(
+                    () -> deflateSegment(input, dict, level, last), executor);
+            enqueue(new Pending(entry, segment));
+
+            if (last) {
+                break;
+            }
+            dictionary = tail(chunk, DICTIONARY_SIZE);
+            chunk = next;
+        }
+        entry.crc = crc.getValue();
+        enqueue(new Pending(entry, null));
+    }
+
+    @Override
+    public void putStored(String name, InputStream in, long size, long crc) throws IOException {
+        drainAll();
+
+        EntryRecord entry = new EntryRecord(name, METHOD_STORED);
+        entry.size = size;
+        entry.compressedSize = size;
+        entry.crc = crc;
+        writeLocalHeader(entry);
+
+        byte[] buffer = new byte[Math.min(chunkSize, 64 * 1024)];
+        long copied = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            copied += read;
+        }
+        if (copied != size) {
+            throw new IOException("Stored entry " + name + " was " + copied + " bytes, expected " + size);
+        }
+        entries.add(entry);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        drainAll();
+
+        long centralStart = out.count;
+        for (EntryRecord entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralSize = out.count - centralStart;
+
+        boolean zip64 = entries.size() >= ZIP64_MAGIC_COUNT
+                || centralStart >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64EndStart = out.count;
+            writeInt(ZIP64_END_SIG);
+            writeLong(44); // size of the remaining record
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0);
+            writeInt(0);
+            writeLong(entries.size());
+            writeLong(entries.size());
+            writeLong(centralSize);
+            writeLong(centralStart);
+
+            writeInt(ZIP64_LOCATOR_SIG);
+            writeInt(0);
+            writeLong(zip64EndStart);
+            writeInt(1);
+        }
+
+        writeInt(END_SIG);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(centralSize, ZIP64_MAGIC));
+        writeInt(Math.min(centralStart, ZIP64_MAGIC));
+        writeShort(0);
+        out.flush();
+    }
+
+    // ==================== Pipeline ====================
+
+    private void enqueue(Pending item) throws IOException {
+        pending.addLast(item);
+        if (item.segment != null) {
+            inFlight++;
+        }
+        while (inFlight > maxInFlight) {
+            drainOne();
+        }
+    }
+
+    private void drainAll() throws IOException {
+        while (!pending.isEmpty()) {
+            drainOne();
+        }
+    }
+
+    /**
+     * Writes the oldest pending item: the entry header before its first segment,
+     * the segment itself, or the data descriptor after its last segment.
+     */
+    private void drainOne() throws IOException {
+        Pending item = pending.removeFirst();
+        EntryRecord entry = item.entry;
+        if (item.segment != null) {
+            inFlight--;
+            byte[] data = await(item.segment);
+            out.write(data);
+            entry.compressedSize += data.length;
+        } else if (entry.localHeaderOffset < 0) {
+            writeLocalHeader(entry);
+        } else {
+            writeDataDescriptor(entry);
+            entries.add(entry);
+        }
+    }
+
+    private byte[] await(CompletableFuture<byte[]> segment) throws IOException {
+        try {
+            return segment.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelPending();
+            throw new IOException("Interrupted while compressing archive entries", e);
+        } catch (ExecutionException e) {
+            cancelPending();
+            throw new IOException("Failed to compress archive entry", e.getCause());
+        }
+    }
+
+    private void cancelPending() {
+        for (Pending item : pending) {
+            if (item.segment != null) {
+                item.segment.cancel(true);
+            }
+        }
+        pending.clear();
+        inFlight = 0;
+    }
+
+    private static byte[] deflateSegment(byte[] input, byte[] dictionary, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            ByteArrayOutputStream segment = new ByteArrayOutputStream(input.length / 2 + 64);
+            byte[] buffer = new byte[Math.max(512, Math.min(input.length, 64 * 1024))];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    segment.write(buffer, 0, n);
+                }
+            } else {
+                // A sync flush ends the segment on a byte boundary without a final block
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    segment.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+            return segment.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] tail(byte[] data, int length) {
+        return data.length <= length ? data : Arrays.copyOfRange(data, data.length - length, data.length);
+    }
+
+    // ==================== Records ====================
+
+    private void writeLocalHeader(EntryRecord entry) throws IOException {
+        entry.localHeaderOffset = out.count;
+        boolean descriptor = entry.method == METHOD_DEFLATED;
+        boolean zip64 = !descriptor && entry.size >= ZIP64_MAGIC;
+
+        writeInt(LOCAL_HEADER_SIG);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(FLAG_UTF8 | (descriptor ? FLAG_DATA_DESCRIPTOR : 0));
+        writeShort(entry.method);
+        writeInt(dosTime);
+        if (descriptor) {
+            writeInt(0);
+            writeInt(0);
+            writeInt(0);
+        } else {
+            writeInt(entry.crc);
+            writeInt(zip64 ? ZIP64_MAGIC : entry.compressedSize);
+            writeInt(zip64 ? ZIP64_MAGIC : entry.size);
+        }
+        writeShort(entry.nameBytes.length);
+        writeShort(zip64 ? 20 : 0);
+        out.write(entry.nameBytes);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_TAG);
+            writeShort(16);
+            writeLong(entry.size);
+            writeLong(entry.compressedSize);
+        }
+    }
+
+    private void writeDataDescriptor(EntryRecord entry) throws IOException {
+        writeInt(DATA_DESCRIPTOR_SIG);
+        writeInt(entry.crc);
+        if (entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC) {
+            writeLong(entry.compressedSize);
+            writeLong(entry.size);
+        } else {
+            writeInt(entry.compressedSize);
+            writeInt(entry.size);
+        }
+    }
+
+    private void writeCentralHeader(EntryRecord entry) throws IOException {
+        boolean sizeZip64 = entry.size >= ZIP64_MAGIC;
+        boolean compressedZip64 = entry.compressedSize >= ZIP64_MAGIC;
+        boolean offsetZip64 = entry.localHeaderOffset >= ZIP64_MAGIC;
+        int extraLength = (sizeZip64 ? 8 : 0) + (compressedZip64 ? 8 : 0) + (offsetZip64 ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+
+        writeInt(CENTRAL_HEADER_SIG);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(FLAG_UTF8 | (entry.method == METHOD_DEFLATED ? FLAG_DATA_DESCRIPTOR : 0));
+        writeShort(entry.method);
+        writeInt(dosTime);
+        writeInt(entry.crc);
+        writeInt(compressedZip64 ? ZIP64_MAGIC : entry.compressedSize);
+        writeInt(sizeZip64 ? ZIP64_MAGIC : entry.size);
+        writeShort(entry.nameBytes.length);
+        writeShort(zip64 ? extraLength + 4 : 0);
+        writeShort(0); // comment length
+        writeShort(0); // disk number
+        writeShort(0); // internal attributes
+        writeInt(0); // external attributes
+        writeInt(offsetZip64 ? ZIP64_MAGIC : entry.localHeaderOffset);
+        out.write(entry.nameBytes);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_TAG);
+            writeShort(extraLength);
+            if (sizeZip64) {
+                writeLong(entry.size);
+            }
+            if (compressedZip64) {
+                writeLong(entry.compressedSize);
+            }
+            if (offsetZip64) {
+                writeLong(entry.localHeaderOffset);
+            }
+        }
+    }
+
+    private static int toDosTime(LocalDateTime time) {
+        int year = Math.max(1980, time.getYear());
+        return (year - 1980) << 25
+                | time.getMonthValue() << 21
+                | time.getDayOfMonth() << 16
+                | time.getHour() << 11
+                | time.getMinute() << 5
+                | time.getSecond() >> 1;
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xFFFF));
+        writeShort((int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt(value & 0xFFFFFFFFL);
+        writeInt(value >>> 32);
+    }
+
+    private static final class EntryRecord {
+        final byte[] nameBytes;
+        final int method;
+        long crc;
+        long size;
+        long compressedSize;
+        long localHeaderOffset = -1;
+
+        EntryRecord(String name, int method) {
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.method = method;
+        }
+    }
+
+    /**
+     * A compressed segment of an entry, or (when {@code segment} is null) the
+     * marker for the entry's header or trailing data descriptor.
+     */
+    private static final class Pending {
+        final EntryRecord entry;
+        final CompletableFuture<byte[]> segment;
+
+        Pending(EntryRecord entry, CompletableFuture<byte[]> segment) {
+            this.entry = entry;
+            this.segment = segment;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        long count;
+
+        CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.anki4j.internal;
+
+import com.anki4j.renderer.Renderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The repositories bound to one connection that serve read queries.
+ * <p>
+ * A SQLite connection and its cached statements may only be used by one thread
+ * at a time, so concurrent readers each borrow a whole context from a
+ * {@link ReadPool}. Caches that are not tied to a connection (decks, models,
+ * the template renderer) are shared between contexts.
+ */
+public class ReadContext implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadContext.class);
+
+    private final Connection ownedConnection;
+    private final CardRepository cardRepository;
+    private final NoteRepository noteRepository;
+    private final RevlogRepository revlogRepository;
+    private final GraveRepository graveRepository;
+    private final StatsRepository statsRepository;
+    private final StudyQueueService studyQueueService;
+    private final RenderService renderService;
+
+    /**
+     * Wraps repositories owned by someone else, e.g. those of the writer
+     * connection; {@link #close()} then does nothing.
+     */
+    public ReadContext(CardRepository cardRepository, NoteRepository noteRepository,
+            RevlogRepository revlogRepository, GraveRepository graveRepository, StatsRepository statsRepository,
+            StudyQueueService studyQueueService, RenderService renderService) {
+        this(null, cardRepository, noteRepository, revlogRepository, graveRepository, statsRepository,
+                studyQueueService, renderService);
+    }
+
+    private ReadContext(Connection ownedConnection, CardRepository cardRepository, NoteRepository noteRepository,
+            RevlogRepository revlogRepository, GraveRepository graveRepository, StatsRepository statsRepository,
+            StudyQueueService studyQueueService, RenderService renderService) {
+        this.ownedConnection = ownedConnection;
+        this.cardRepository = cardRepository;
+        this.noteRepository = noteRepository;
+        this.revlogRepository = revlogRepository;
+        this.graveRepository = graveRepository;
+        this.statsRepository = statsRepository;
+        this.studyQueueService = studyQueueService;
+        this.renderService = renderService;
+    }
+
+    /**
+     * Creates a context with its own repositories on {@code connection}, which it
+     * closes with itself.
+     */
+    public static ReadContext open(Connection connection, DeckRepository deckRepository, ModelService modelService,
+            IndexManager indexManager, Renderer renderer) {
+        CardRepository cardRepository = new CardRepository(connection);
+        NoteRepository noteRepository = new NoteRepository(connection, cardRepository);
+        return new ReadContext(connection, cardRepository, noteRepository, new RevlogRepository(connection),
+                new GraveRepository(connection), new StatsRepository(connection, deckRepository),
+                new StudyQueueService(connection, deckRepository, cardRepository, indexManager),
+                new RenderService(cardRepository, noteRepository, modelService, renderer));
+    }
+
+    public CardRepository getCardRepository() {
+        return cardRepository;
+    }
+
+    public NoteRepository getNoteRepository() {
+        return noteRepository;
+    }
+
+    public RevlogRepository getRevlogRepository() {
+        return revlogRepository;
+    }
+
+    public GraveRepository getGraveRepository() {
+        return graveRepository;
+    }
+
+    public StatsRepository getStatsRepository() {
+        return statsRepository;
+    }
+
+    public StudyQueueService getStudyQueueService() {
+        return studyQueueService;
+    }
+
+    public RenderService getRenderService() {
+        return renderService;
+    }
+
+    @Override
+    public void close() {
+        if (ownedConnection == null) {
+            return;
+        }
+        cardRepository.close();
+        noteRepository.close();
+        revlogRepository.close();
+        graveRepository.close();
+        statsRepository.close();
+        try {
+            ownedConnection.close();
+        } catch (SQLException e) {
+            logger.warn("Failed to close read connection: {}", e.getMessage());
+        }
+    }
+}
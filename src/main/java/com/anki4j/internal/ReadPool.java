@@ -0,0 +1,176 @@
+package com.anki4j.internal;
+
+import com.anki4j.exception.AnkiException;
+import com.anki4j.renderer.Renderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A fixed set of read-only connections to a WAL-mode database file, each with
+ * its own {@link ReadContext}.
+ * <p>
+ * In WAL mode readers do not block the writer or each other, so queries from
+ * different threads run in parallel on different connections. A thread that
+ * finds every context in use waits for one to be released. Borrowing is
+ * reentrant: a thread that already holds a context, e.g. while consuming a
+ * stream, runs further queries on that same context.
+ */
+public class ReadPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadPool.class);
+
+    private final List<ReadContext> contexts = new ArrayList<>();
+    private final BlockingQueue<ReadContext> idle;
+    private final ThreadLocal<Borrow> borrowed = new ThreadLocal<>();
+
+    // A context held by one thread, released when its last use ends
+    private static final class Borrow {
+        final ReadContext context;
+        final AtomicInteger holds = new AtomicInteger(1);
+
+        Borrow(ReadContext context) {
+            this.context = context;
+        }
+    }
+
+    public ReadPool(Path dbFile, int size, long mmapSize, int cacheSizeKib, DeckRepository deckRepository,
+            ModelService modelService, IndexManager indexManager, Renderer renderer) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        logger.info("Opening {} read-only connections to {}", size, dbFile);
+        this.idle = new ArrayBlockingQueue<>(size);
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        String url = "jdbc:sqlite:" + dbFile.toAbsolutePath();
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection connection = DriverManager.getConnection(url, config.toProperties());
+                try {
+                    DatabaseManager.configure(connection, mmapSize, cacheSizeKib);
+                } catch (SQLException e) {
+                    connection.close();
+                    throw e;
+                }
+                ReadContext context = ReadContext.open(connection, deckRepository, modelService, indexManager,
+                        renderer);
+                contexts.add(context);
+                idle.add(context);
+            }
+        } catch (SQLException e) {
+            close();
+            throw new AnkiException("Failed to open read connections to " + dbFile, e);
+        }
+    }
+
+    public int size() {
+        return contexts.size();
+    }
+
+    /**
+     * Runs {@code query} on a borrowed context and returns it to the pool.
+     */
+    public <T> T read(Function<ReadContext, T> query) {
+        Borrow borrow = acquire();
+        try {
+            return query.apply(borrow.context);
+        } finally {
+            release(borrow);
+        }
+    }
+
+    /**
+     * Opens a stream on a borrowed context. The context stays borrowed until the
+     * stream has been consumed to the end or closed.
+     */
+    public <T> Stream<T> stream(Function<ReadContext, Stream<T>> query) {
+        Borrow borrow = acquire();
+        Stream<T> source;
+        try {
+            source = query.apply(borrow.context);
+        } catch (RuntimeException e) {
+            release(borrow);
+            throw e;
+        }
+        AtomicBoolean released = new AtomicBoolean(false);
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                release(borrow);
+            }
+        };
+        Spliterator<T> rows = source.spliterator();
+        Spliterator<T> releasing = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, rows.characteristics()) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (released.get()) {
+                    return false;
+                }
+                if (rows.tryAdvance(action)) {
+                    return true;
+                }
+                source.close();
+                release.run();
+                return false;
+            }
+        };
+        return StreamSupport.stream(releasing, false).onClose(() -> {
+            try {
+                source.close();
+            } finally {
+                release.run();
+            }
+        });
+    }
+
+    private Borrow acquire() {
+        Borrow borrow = borrowed.get();
+        if (borrow != null && borrow.holds.getAndUpdate(holds -> holds > 0 ? holds + 1 : holds) > 0) {
+            return borrow;
+        }
+        try {
+            borrow = new Borrow(idle.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnkiException("Interrupted while waiting for a read connection", e);
+        }
+        borrowed.set(borrow);
+        return borrow;
+    }
+
+    // May run on another thread when a stream is closed there
+    private void release(Borrow borrow) {
+        if (borrow.holds.decrementAndGet() == 0) {
+            if (borrowed.get() == borrow) {
+                borrowed.remove();
+            }
+            idle.add(borrow.context);
+        }
+    }
+
+    @Override
+    public void close() {
+        logger.info("Closing {} read connections", contexts.size());
+        for (ReadContext context : contexts) {
+            context.close();
+        }
+        contexts.clear();
+        idle.clear();
+    }
+}
@@ -9,31 +9,98 @@ import com.anki4j.renderer.Renderer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class RenderService {
     private static final Logger logger = LoggerFactory.getLogger(RenderService.class);
 
+    private final CardRepository cardRepository;
     private final NoteRepository noteRepository;
     private final ModelService modelService;
     private final Renderer renderer;
 
-    public RenderService(NoteRepository noteRepository, ModelService modelService) {
+    public RenderService(CardRepository cardRepository, NoteRepository noteRepository, ModelService modelService) {
+        this(cardRepository, noteRepository, modelService, new Renderer());
+    }
+
+    /**
+     * @param renderer renderer whose compiled templates are shared with other
+     *                 services
+     */
+    public RenderService(CardRepository cardRepository, NoteRepository noteRepository, ModelService modelService,
+            Renderer renderer) {
         logger.info("Initializing RenderService");
+        this.cardRepository = cardRepository;
         this.noteRepository = noteRepository;
         this.modelService = modelService;
-        this.renderer = new Renderer();
+        this.renderer = renderer;
+    }
+
+    public Renderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * Returns the ordinals of the cards {@code note} generates with {@code model}.
+     */
+    public int[] cardOrdinals(Note note, Model model) {
+        return renderer.cardOrdinals(note, model);
     }
 
     public Optional<RenderedCard> renderCard(Card card) {
         logger.info("Rendering card ID: {} (ordinal: {})", card.getId(), card.getOrd());
-        Optional<Note> noteOpt = noteRepository.getNoteFromCard(card.getId());
+        Optional<Note> noteOpt = noteRepository.getNote(card.getNid());
         if (noteOpt.isEmpty()) {
             logger.warn("Could not find note for card ID: {}", card.getId());
             return Optional.empty();
         }
-        Note note = noteOpt.get();
 
+        Optional<RenderedCard> rendered = render(card, noteOpt.get());
+        rendered.ifPresent(r -> logger.info("Successfully rendered card ID: {}", card.getId()));
+        return rendered;
+    }
+
+    /**
+     * Renders many cards, loading all of their notes in one batch query.
+     *
+     * @return rendered cards keyed by card ID, in the order of {@code cards};
+     *         cards whose note, model or template is missing are skipped
+     */
+    public Map<Long, RenderedCard> renderCards(List<Card> cards) {
+        logger.info("Rendering {} cards", cards.size());
+        long[] noteIds = cards.stream().mapToLong(Card::getNid).distinct().toArray();
+        return renderAll(cards, indexById(noteRepository.getNotesByIds(noteIds)));
+    }
+
+    /**
+     * Renders every card of a deck with one query for the cards and one join for
+     * their notes.
+     */
+    public Map<Long, RenderedCard> renderDeck(long deckId) {
+        logger.info("Rendering deck ID: {}", deckId);
+        List<Card> cards = cardRepository.getCards(deckId);
+        return renderAll(cards, indexById(noteRepository.getNotesInDeck(deckId)));
+    }
+
+    private Map<Long, RenderedCard> renderAll(List<Card> cards, Map<Long, Note> notes) {
+        Map<Long, RenderedCard> rendered = new LinkedHashMap<>();
+        for (Card card : cards) {
+            Note note = notes.get(card.getNid());
+            if (note == null) {
+                logger.warn("Could not find note for card ID: {}", card.getId());
+                continue;
+            }
+            render(card, note).ifPresent(r -> rendered.put(card.getId(), r));
+        }
+        logger.info("Rendered {} of {} cards", rendered.size(), cards.size());
+        return rendered;
+    }
+
+    private Optional<RenderedCard> render(Card card, Note note) {
         Optional<Model> modelOpt = modelService.getModel(note.getMid());
         if (modelOpt.isEmpty()) {
             logger.warn("Could not find model ID {} for note ID {}", note.getMid(), note.getId());
@@ -42,9 +109,11 @@ public class RenderService {
         Model model = modelOpt.get();
 
         int ord = card.getOrd();
+        // Cloze models share one template; the ordinal picks the cloze number instead
+        int templateIndex = model.isCloze() ? 0 : ord;
         Template template = null;
-        if (model.getTmpls() != null && ord < model.getTmpls().size()) {
-            template = model.getTmpls().get(ord);
+        if (model.getTmpls() != null && templateIndex < model.getTmpls().size()) {
+            template = model.getTmpls().get(templateIndex);
         }
 
         if (template == null) {
@@ -52,7 +121,14 @@ public class RenderService {
             return Optional.empty();
         }
 
-        logger.info("Successfully rendered card ID: {}", card.getId());
-        return Optional.of(renderer.renderCard(note, model, template));
+        return Optional.of(renderer.renderCard(note, model, template, ord));
+    }
+
+    private static Map<Long, Note> indexById(List<Note> notes) {
+        Map<Long, Note> byId = new HashMap<>(notes.size() * 2);
+        for (Note note : notes) {
+            byId.put(note.getId(), note);
+        }
+        return byId;
     }
 }
@@ -2,6 +2,7 @@ package com.anki4j.internal;
 
 import com.anki4j.exception.AnkiException;
 import com.anki4j.model.Revlog;
+import com.anki4j.stats.RevlogSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,13 +10,17 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-public class RevlogRepository {
+public class RevlogRepository implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(RevlogRepository.class);
     private final Connection connection;
+    private final StatementCache statements;
 
     public RevlogRepository(Connection connection) {
         this.connection = connection;
+        this.statements = new StatementCache(connection);
     }
 
     public List<Revlog> getAllRevlogs() {
@@ -24,8 +29,9 @@ public class RevlogRepository {
         String sql = "SELECT * FROM revlog";
         try (Statement stmt = connection.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
+            RevlogColumns columns = new RevlogColumns(rs);
             while (rs.next()) {
-                list.add(mapResultSetToRevlog(rs));
+                list.add(columns.read(rs, new Revlog()));
             }
         } catch (SQLException e) {
             logger.error("Failed to query all revlogs: {}", e.getMessage());
@@ -34,10 +40,101 @@ public class RevlogRepository {
         return list;
     }
 
+    /**
+     * Streams review log entries from a live cursor instead of materializing them.
+     * Revlog IDs are review timestamps in milliseconds, so the range selects a
+     * time window.
+     *
+     * @param fromId inclusive lower bound of the revlog ID
+     * @param toId   exclusive upper bound of the revlog ID
+     * @return a stream that must be closed if not consumed to the end
+     */
+    public Stream<Revlog> streamRevlogs(long fromId, long toId, int fetchSize) {
+        logger.info("Streaming revlogs with IDs in [{}, {})", fromId, toId);
+        return RowStream.of(prepareRangeQuery(fromId, toId), fetchSize, RevlogColumns.newRows());
+    }
+
+    /**
+     * Passes every review log entry in {@code [fromId, toId)} to {@code action}
+     * using one reused {@link Revlog} instance. The entry must not be kept after
+     * {@code action} returns.
+     */
+    public void scanRevlogs(long fromId, long toId, int fetchSize, Consumer<? super Revlog> action) {
+        logger.info("Scanning revlogs with IDs in [{}, {})", fromId, toId);
+        RowStream.scan(prepareRangeQuery(fromId, toId), fetchSize, RevlogColumns.reusedRow(), action);
+    }
+
+    // Unlike cached statements, the returned statement belongs to the caller
+    private PreparedStatement prepareRangeQuery(long fromId, long toId) {
+        try {
+            PreparedStatement stmt = connection.prepareStatement("SELECT * FROM revlog WHERE id >= ? AND id < ?");
+            stmt.setLong(1, fromId);
+            stmt.setLong(2, toId);
+            return stmt;
+        } catch (SQLException e) {
+            logger.error("Failed to prepare revlog query: {}", e.getMessage());
+            throw new AnkiException("Failed to prepare revlog query", e);
+        }
+    }
+
+    /**
+     * Loads the review log into primitive column arrays sorted by card and time.
+     * The row count and the rows are read in one transaction, so reviews added
+     * meanwhile cannot truncate the snapshot.
+     */
+    public RevlogSnapshot loadSnapshot(int fetchSize) {
+        logger.info("Loading columnar revlog snapshot");
+        try {
+            return Transaction.call(connection, () -> readSnapshot(fetchSize));
+        } catch (SQLException e) {
+            logger.error("Failed to load revlog snapshot: {}", e.getMessage());
+            throw new AnkiException("Failed to load revlog snapshot", e);
+        }
+    }
+
+    private RevlogSnapshot readSnapshot(int fetchSize) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            int capacity;
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM revlog")) {
+                capacity = rs.next() ? rs.getInt(1) : 0;
+            }
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+
+            long[] id = new long[capacity];
+            long[] cid = new long[capacity];
+            int[] ease = new int[capacity];
+            int[] ivl = new int[capacity];
+            int[] lastIvl = new int[capacity];
+            int[] factor = new int[capacity];
+            int[] time = new int[capacity];
+            int[] type = new int[capacity];
+            int size = 0;
+            String sql = "SELECT id, cid, ease, ivl, lastIvl, factor, time, type FROM revlog ORDER BY cid, id";
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next() && size < capacity) {
+                    id[size] = rs.getLong(1);
+                    cid[size] = rs.getLong(2);
+                    ease[size] = rs.getInt(3);
+                    ivl[size] = rs.getInt(4);
+                    lastIvl[size] = rs.getInt(5);
+                    factor[size] = rs.getInt(6);
+                    time[size] = rs.getInt(7);
+                    type[size] = rs.getInt(8);
+                    size++;
+                }
+            }
+            logger.info("Loaded {} revlog rows into snapshot", size);
+            return new RevlogSnapshot(size, id, cid, ease, ivl, lastIvl, factor, time, type);
+        }
+    }
+
     public Optional<Revlog> getRevlog(long id) {
         logger.info("Fetching revlog ID: {}", id);
         String sql = "SELECT * FROM revlog WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try {
+            PreparedStatement pstmt = statements.prepare(sql);
             pstmt.setLong(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
@@ -52,16 +149,61 @@ public class RevlogRepository {
     }
 
     private Revlog mapResultSetToRevlog(ResultSet rs) throws SQLException {
-        Revlog r = new Revlog();
-        r.setId(rs.getLong("id"));
-        r.setCid(rs.getLong("cid"));
-        r.setUsn(rs.getInt("usn"));
-        r.setEase(rs.getInt("ease"));
-        r.setIvl(rs.getInt("ivl"));
-        r.setLastIvl(rs.getInt("lastIvl"));
-        r.setFactor(rs.getInt("factor"));
-        r.setTime(rs.getInt("time"));
-        r.setType(rs.getInt("type"));
-        return r;
+        return new RevlogColumns(rs).read(rs, new Revlog());
+    }
+
+    @Override
+    public void close() {
+        statements.close();
+    }
+
+    /**
+     * Column indexes of a revlog result set, resolved once so rows are read by
+     * position instead of by name.
+     */
+    private static final class RevlogColumns {
+        private final int id, cid, usn, ease, ivl, lastIvl, factor, time, type;
+
+        RevlogColumns(ResultSet rs) throws SQLException {
+            id = rs.findColumn("id");
+            cid = rs.findColumn("cid");
+            usn = rs.findColumn("usn");
+            ease = rs.findColumn("ease");
+            ivl = rs.findColumn("ivl");
+            lastIvl = rs.findColumn("lastIvl");
+            factor = rs.findColumn("factor");
+            time = rs.findColumn("time");
+            type = rs.findColumn("type");
+        }
+
+        Revlog read(ResultSet rs, Revlog revlog) throws SQLException {
+            revlog.setId(rs.getLong(id));
+            revlog.setCid(rs.getLong(cid));
+            revlog.setUsn(rs.getInt(usn));
+            revlog.setEase(rs.getInt(ease));
+            revlog.setIvl(rs.getInt(ivl));
+            revlog.setLastIvl(rs.getInt(lastIvl));
+            revlog.setFactor(rs.getInt(factor));
+            revlog.setTime(rs.getInt(time));
+            revlog.setType(rs.getInt(type));
+            return revlog;
+        }
+
+        /** Maps every row to a new Revlog. */
+        static RowStream.RowMapperFactory<Revlog> newRows() {
+            return rs -> {
+                RevlogColumns columns = new RevlogColumns(rs);
+                return row -> columns.read(row, new Revlog());
+            };
+        }
+
+        /** Maps every row into the same Revlog instance. */
+        static RowStream.RowMapperFactory<Revlog> reusedRow() {
+            return rs -> {
+                RevlogColumns columns = new RevlogColumns(rs);
+                Revlog revlog = new Revlog();
+                return row -> columns.read(row, revlog);
+            };
+        }
     }
 }
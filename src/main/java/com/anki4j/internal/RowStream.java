@@ -0,0 +1,136 @@
+package com.anki4j.internal;
+
+import com.anki4j.exception.AnkiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Exposes a live {@link ResultSet} as a lazily fetched {@link Stream}.
+ * <p>
+ * Rows are mapped one at a time as the stream is consumed, so a table is never
+ * materialized in memory. The stream owns its statement, which is closed when
+ * the result set is exhausted or the stream is closed, whichever comes first.
+ * Callers must close the stream (e.g. with try-with-resources) if they stop
+ * consuming it early.
+ */
+public final class RowStream {
+    private static final Logger logger = LoggerFactory.getLogger(RowStream.class);
+
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Creates the mapper for one result set, e.g. after resolving its column
+     * indexes.
+     */
+    @FunctionalInterface
+    public interface RowMapperFactory<T> {
+        RowMapper<T> create(ResultSet rs) throws SQLException;
+    }
+
+    private RowStream() {
+    }
+
+    /**
+     * Executes {@code stmt} and streams its rows through the mapper created for
+     * its result set. The statement must not come from a {@link StatementCache}:
+     * it is closed with the stream.
+     */
+    public static <T> Stream<T> of(PreparedStatement stmt, int fetchSize, RowMapperFactory<T> mappers) {
+        Cursor<T> cursor;
+        try {
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+            ResultSet rs = stmt.executeQuery();
+            cursor = new Cursor<>(stmt, rs, mappers.create(rs));
+        } catch (SQLException e) {
+            closeQuietly(stmt);
+            throw new AnkiException("Failed to open result cursor", e);
+        }
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    /**
+     * Executes {@code stmt} and passes every row to {@code action}, then closes
+     * the statement. Unlike {@link #of}, nothing escapes the call, which lets
+     * mappers hand out one reused row object.
+     */
+    public static <T> void scan(PreparedStatement stmt, int fetchSize, RowMapperFactory<T> mappers,
+            Consumer<? super T> action) {
+        try (PreparedStatement owned = stmt) {
+            if (fetchSize > 0) {
+                owned.setFetchSize(fetchSize);
+            }
+            try (ResultSet rs = owned.executeQuery()) {
+                RowMapper<T> mapper = mappers.create(rs);
+                while (rs.next()) {
+                    action.accept(mapper.map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new AnkiException("Failed to scan rows", e);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            logger.warn("Failed to close result cursor: {}", e.getMessage());
+        }
+    }
+
+    private static final class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final PreparedStatement stmt;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private boolean closed = false;
+
+        Cursor(PreparedStatement stmt, ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.stmt = stmt;
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    // Release the statement (and SQLite's read lock) as soon as the rows run out
+                    close();
+                    return false;
+                }
+                action.accept(mapper.map(rs));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new AnkiException("Failed to read next row", e);
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeQuietly(rs);
+            closeQuietly(stmt);
+        }
+    }
+}
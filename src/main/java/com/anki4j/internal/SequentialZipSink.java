@@ -0,0 +1,55 @@
+package com.anki4j.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * {@link ZipSink} that deflates every entry on the calling thread through a
+ * {@link ZipOutputStream}.
+ */
+class SequentialZipSink implements ZipSink {
+
+    private final ZipOutputStream zos;
+    private final byte[] buffer;
+
+    SequentialZipSink(OutputStream out, int bufferSize) {
+        this.zos = new ZipOutputStream(out);
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void putDeflated(String name, InputStream in, int level) throws IOException {
+        zos.setLevel(level);
+        zos.putNextEntry(new ZipEntry(name));
+        copy(in);
+        zos.closeEntry();
+    }
+
+    @Override
+    public void putStored(String name, InputStream in, long size, long crc) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc);
+        zos.putNextEntry(entry);
+        copy(in);
+        zos.closeEntry();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        zos.finish();
+        zos.flush();
+    }
+
+    private void copy(InputStream in) throws IOException {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            zos.write(buffer, 0, read);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.anki4j.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps prepared statements for the lifetime of a session so SQLite parses and
+ * plans each query once instead of on every call.
+ * <p>
+ * A cached statement is shared by every caller using the same SQL, so a result
+ * set obtained from it must be fully consumed or closed before the statement
+ * is executed again.
+ */
+public class StatementCache implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    public StatementCache(Connection connection) {
+        this.connection = connection;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null || stmt.isClosed()) {
+            stmt = connection.prepareStatement(sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    @Override
+    public void close() {
+        for (PreparedStatement stmt : statements.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                logger.warn("Failed to close cached statement: {}", e.getMessage());
+            }
+        }
+        statements.clear();
+    }
+}
@@ -0,0 +1,232 @@
+package com.anki4j.internal;
+
+import com.anki4j.exception.AnkiException;
+import com.anki4j.stats.CollectionStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes {@link CollectionStats} with {@code GROUP BY} queries so that only
+ * aggregated rows, never individual reviews or cards, reach Java.
+ * <p>
+ * Per-deck statistics group by {@code did} in the same queries rather than
+ * running one pass per deck, since a SQLite connection executes one statement
+ * at a time. Statistics for one deck include its child decks, as in Anki.
+ */
+public class StatsRepository implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StatsRepository.class);
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long WHOLE_COLLECTION = -1;
+
+    private final Connection connection;
+    private final DeckRepository deckRepository;
+    private final StatementCache statements;
+
+    public StatsRepository(Connection connection, DeckRepository deckRepository) {
+        this.connection = connection;
+        this.deckRepository = deckRepository;
+        this.statements = new StatementCache(connection);
+    }
+
+    /**
+     * @param deckId deck to restrict to, together with its descendants, or -1 for
+     *               the whole collection
+     */
+    public CollectionStats getStats(long deckId, int days) {
+        logger.info("Computing statistics for deck ID {} over {} days", deckId, days);
+        Map<Long, CollectionStats> stats = compute(deckId, false, days);
+        long key = deckId == WHOLE_COLLECTION ? WHOLE_COLLECTION : deckId;
+        return stats.containsKey(key) ? stats.get(key) : newStats(stats, key, days, currentDay(), now());
+    }
+
+    /**
+     * Computes statistics for every deck with cards, keyed by deck ID.
+     */
+    public Map<Long, CollectionStats> getStatsByDeck(int days) {
+        logger.info("Computing statistics per deck over {} days", days);
+        return compute(WHOLE_COLLECTION, true, days);
+    }
+
+    private Map<Long, CollectionStats> compute(long deckId, boolean perDeck, int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("days must be positive");
+        }
+        long start = System.currentTimeMillis();
+        Map<Long, CollectionStats> result = new LinkedHashMap<>();
+        boolean byDid = perDeck || deckId != WHOLE_COLLECTION;
+        // A single deck's subtree is reported under the deck's own ID
+        String key = perDeck ? "c.did" : Long.toString(deckId);
+        long[] deckParam = deckId != WHOLE_COLLECTION ? deckTree(deckId) : new long[0];
+        String deckFilter = deckParam.length > 0 ? " AND c.did IN (" + placeholders(deckParam.length) + ")" : "";
+        // Without a deck dimension, reviews of deleted cards still count
+        String revlogSource = byDid ? "revlog r JOIN cards c ON c.id = r.cid" : "revlog r";
+
+        try {
+            long crt = collectionCreated();
+            long now = now();
+            int today = (int) ((now / 1000 - crt) / SECONDS_PER_DAY);
+            int firstDay = today - days + 1;
+            long windowStartMillis = (crt + firstDay * SECONDS_PER_DAY) * 1000;
+
+            // 1. Daily review counts and times over the whole history
+            String sql = "SELECT " + key + ", (r.id / 1000 - ?) / 86400 AS day, count(*), sum(r.time), "
+                    + "sum(CASE WHEN r.type = 1 THEN 1 ELSE 0 END), "
+                    + "sum(CASE WHEN r.type = 1 AND r.ease > 1 THEN 1 ELSE 0 END) "
+                    + "FROM " + revlogSource + " WHERE 1 = 1" + deckFilter + " GROUP BY 1, day";
+            query(sql, params(deckParam, crt), rs -> {
+                CollectionStats stats = newStats(result, rs.getLong(1), days, today, now);
+                int dayIndex = rs.getInt(2) - firstDay;
+                long reviews = rs.getLong(3);
+                long time = rs.getLong(4);
+                stats.setTotalReviews(stats.getTotalReviews() + reviews);
+                stats.setTotalTimeMillis(stats.getTotalTimeMillis() + time);
+                stats.setReviewCount(stats.getReviewCount() + rs.getLong(5));
+                stats.setPassedReviewCount(stats.getPassedReviewCount() + rs.getLong(6));
+                if (dayIndex >= 0 && dayIndex < days) {
+                    stats.getReviewsPerDay()[dayIndex] += reviews;
+                    stats.getTimePerDay()[dayIndex] += time;
+                }
+            });
+
+            // 2. Hourly breakdown over the window
+            sql = "SELECT " + key + ", "
+                    + "CAST(strftime('%H', r.id / 1000, 'unixepoch', 'localtime') AS INTEGER) AS hour, count(*), "
+                    + "sum(CASE WHEN r.ease > 1 THEN 1 ELSE 0 END) "
+                    + "FROM " + revlogSource + " WHERE r.id >= ?" + deckFilter + " GROUP BY 1, hour";
+            query(sql, params(deckParam, windowStartMillis), rs -> {
+                CollectionStats stats = newStats(result, rs.getLong(1), days, today, now);
+                int hour = rs.getInt(2);
+                if (hour >= 0 && hour < 24) {
+                    stats.getReviewsByHour()[hour] += rs.getLong(3);
+                    stats.getPassedByHour()[hour] += rs.getLong(4);
+                }
+            });
+
+            // 3. Cards by queue
+            sql = "SELECT " + key + ", c.queue, count(*) FROM cards c WHERE 1 = 1" + deckFilter
+                    + " GROUP BY 1, c.queue";
+            query(sql, params(deckParam), rs -> {
+                CollectionStats stats = newStats(result, rs.getLong(1), days, today, now);
+                long count = rs.getLong(3);
+                int queue = rs.getInt(2);
+                // Buried cards (-2, -3) are not reported separately
+                if (queue == 0) {
+                    stats.setNewCards(stats.getNewCards() + count);
+                } else if (queue == 1 || queue == 3) {
+                    stats.setLearningCards(stats.getLearningCards() + count);
+                } else if (queue == 2) {
+                    stats.setReviewCards(stats.getReviewCards() + count);
+                } else if (queue == -1) {
+                    stats.setSuspendedCards(stats.getSuspendedCards() + count);
+                }
+            });
+
+            // 4. Due forecast: learning cards are due at a timestamp, the others on a day number
+            sql = "SELECT " + key + ", "
+                    + "CASE WHEN c.queue = 1 THEN (c.due - ?) / 86400 ELSE c.due END AS day, count(*) "
+                    + "FROM cards c WHERE c.queue IN (1, 2, 3)" + deckFilter + " GROUP BY 1, day";
+            query(sql, params(deckParam, crt), rs -> {
+                CollectionStats stats = newStats(result, rs.getLong(1), days, today, now);
+                int offset = Math.max(0, rs.getInt(2) - today);
+                if (offset < days) {
+                    stats.getDueForecast()[offset] += rs.getLong(3);
+                }
+            });
+
+            // 5. Interval histogram of review cards
+            sql = "SELECT " + key + ", c.ivl, count(*) FROM cards c WHERE c.type = 2" + deckFilter
+                    + " GROUP BY 1, c.ivl";
+            query(sql, params(deckParam), rs -> {
+                CollectionStats stats = newStats(result, rs.getLong(1), days, today, now);
+                stats.getIntervalHistogram().merge(rs.getInt(2), rs.getLong(3), Long::sum);
+            });
+
+            logger.info("Computed statistics for {} group(s) in {} ms", result.size(),
+                    System.currentTimeMillis() - start);
+        } catch (SQLException e) {
+            logger.error("Failed to compute statistics: {}", e.getMessage());
+            throw new AnkiException("Failed to compute statistics", e);
+        }
+        return result;
+    }
+
+    private void query(String sql, long[] params, IdBatchQuery.RowHandler handler) throws SQLException {
+        PreparedStatement stmt = statements.prepare(sql);
+        for (int i = 0; i < params.length; i++) {
+            stmt.setLong(i + 1, params[i]);
+        }
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                handler.handle(rs);
+            }
+        }
+    }
+
+    // The deck followed by its descendants
+    private long[] deckTree(long deckId) {
+        long[] descendants = deckRepository.getDescendantIds(deckId);
+        long[] ids = new long[descendants.length + 1];
+        ids[0] = deckId;
+        System.arraycopy(descendants, 0, ids, 1, descendants.length);
+        return ids;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", java.util.Collections.nCopies(count, "?"));
+    }
+
+    // Leading parameters followed by the optional deck IDs, which every deck filter binds last
+    private static long[] params(long[] deckParam, long... leading) {
+        long[] params = java.util.Arrays.copyOf(leading, leading.length + deckParam.length);
+        System.arraycopy(deckParam, 0, params, leading.length, deckParam.length);
+        return params;
+    }
+
+    private static CollectionStats newStats(Map<Long, CollectionStats> result, long key, int days, int today,
+            long now) {
+        return result.computeIfAbsent(key, k -> {
+            CollectionStats stats = new CollectionStats();
+            stats.setDeckId(k);
+            stats.setGeneratedAt(now);
+            stats.setToday(today);
+            stats.setDays(days);
+            stats.setReviewsPerDay(new long[days]);
+            stats.setTimePerDay(new long[days]);
+            stats.setDueForecast(new long[days]);
+            return stats;
+        });
+    }
+
+    private int currentDay() {
+        try {
+            return (int) ((now() / 1000 - collectionCreated()) / SECONDS_PER_DAY);
+        } catch (SQLException e) {
+            throw new AnkiException("Failed to read collection creation time", e);
+        }
+    }
+
+    private long collectionCreated() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT crt FROM col LIMIT 1")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void close() {
+        statements.close();
+    }
+}
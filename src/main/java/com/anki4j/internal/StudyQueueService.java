@@ -0,0 +1,88 @@
+package com.anki4j.internal;
+
+import com.anki4j.exception.AnkiException;
+import com.anki4j.model.Card;
+import com.anki4j.sched.StudyQueues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the new, learning and review queues of a deck tree with indexed
+ * queries instead of filtering every card of the deck in Java.
+ */
+public class StudyQueueService {
+    private static final Logger logger = LoggerFactory.getLogger(StudyQueueService.class);
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    // Intraday learning cards due within this window are shown early, as Anki does
+    private static final long LEARN_AHEAD_SECONDS = 20 * 60;
+
+    private final Connection connection;
+    private final DeckRepository deckRepository;
+    private final CardRepository cardRepository;
+    private final IndexManager indexManager;
+
+    public StudyQueueService(Connection connection, DeckRepository deckRepository, CardRepository cardRepository,
+            IndexManager indexManager) {
+        this.connection = connection;
+        this.deckRepository = deckRepository;
+        this.cardRepository = cardRepository;
+        this.indexManager = indexManager;
+    }
+
+    /**
+     * @param newLimit    maximum number of new cards, or -1 for no limit
+     * @param reviewLimit maximum number of review cards, or -1 for no limit
+     */
+    public StudyQueues getStudyQueues(long deckId, int newLimit, int reviewLimit) {
+        logger.debug("Building study queues for deck ID: {}", deckId);
+        indexManager.ensureSchedulingIndex();
+
+        long[] deckIds = deckTree(deckId);
+        long now = System.currentTimeMillis() / 1000;
+        int today = (int) ((now - collectionCreated()) / SECONDS_PER_DAY);
+
+        StudyQueues queues = new StudyQueues();
+        queues.setDeckId(deckId);
+        queues.setToday(today);
+        queues.setNewCards(cardRepository.getDueCards(deckIds, 0, Long.MAX_VALUE, newLimit));
+
+        List<Card> learning = new ArrayList<>(
+                cardRepository.getDueCards(deckIds, 1, now + LEARN_AHEAD_SECONDS, -1));
+        learning.addAll(cardRepository.getDueCards(deckIds, 3, today, -1));
+        queues.setLearningCards(learning);
+
+        queues.setReviewCards(cardRepository.getDueCards(deckIds, 2, today, reviewLimit));
+        logger.debug("Study queues for deck {}: {} new, {} learning, {} review", deckId,
+                queues.getNewCards().size(), learning.size(), queues.getReviewCards().size());
+        return queues;
+    }
+
+    /**
+     * Returns the deck and all of its descendants ("Parent::Child" names).
+     */
+    private long[] deckTree(long deckId) {
+        long[] descendants = deckRepository.getDescendantIds(deckId);
+        long[] ids = new long[descendants.length + 1];
+        ids[0] = deckId;
+        System.arraycopy(descendants, 0, ids, 1, descendants.length);
+        return ids;
+    }
+
+    private long collectionCreated() {
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT crt FROM col LIMIT 1")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            logger.error("Failed to read collection creation time: {}", e.getMessage());
+            throw new AnkiException("Failed to read collection creation time", e);
+        }
+    }
+}
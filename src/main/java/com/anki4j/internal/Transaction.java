@@ -0,0 +1,54 @@
+package com.anki4j.internal;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Runs a unit of work in a single SQLite transaction.
+ * <p>
+ * If the connection is already inside a transaction (auto-commit off), the
+ * work joins it and the caller that opened it decides whether to commit.
+ */
+public final class Transaction {
+
+    @FunctionalInterface
+    public interface Work {
+        void run() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Query<T> {
+        T run() throws SQLException;
+    }
+
+    private Transaction() {
+    }
+
+    public static void run(Connection connection, Work work) throws SQLException {
+        call(connection, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Like {@link #run(Connection, Work)}, returning the work's result. Reads made
+     * in one call see a single consistent snapshot of the database.
+     */
+    public static <T> T call(Connection connection, Query<T> work) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            return work.run();
+        }
+        connection.setAutoCommit(false);
+        try {
+            T result = work.run();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.anki4j.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Destination for the entries of an APKG archive.
+ */
+interface ZipSink {
+
+    void putDeflated(String name, InputStream in, int level) throws IOException;
+
+    /**
+     * Writes an uncompressed entry whose size and CRC are known up front.
+     */
+    void putStored(String name, InputStream in, long size, long crc) throws IOException;
+
+    /**
+     * Writes the central directory. The underlying stream is not closed.
+     */
+    void finish() throws IOException;
+}
@@ -1,12 +1,18 @@
 package com.anki4j.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.util.List;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Model {
+    public static final int TYPE_STANDARD = 0;
+    public static final int TYPE_CLOZE = 1;
+
     private long id;
     private String name;
+    private int type; // 0 = standard, 1 = cloze
+    private int sortf; // ordinal of the sort field
     private List<Field> flds;
     private List<Template> tmpls;
     private String css;
@@ -31,6 +37,30 @@ public class Model {
         this.name = name;
     }
 
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    public int getSortf() {
+        return sortf;
+    }
+
+    public void setSortf(int sortf) {
+        this.sortf = sortf;
+    }
+
+    /**
+     * Cloze models have a single template; each {@code {{cN::...}}} number becomes one card.
+     */
+    @JsonIgnore
+    public boolean isCloze() {
+        return type == TYPE_CLOZE;
+    }
+
     public List<Field> getFlds() {
         return flds;
     }
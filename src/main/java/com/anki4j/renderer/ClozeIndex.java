@@ -0,0 +1,216 @@
+package com.anki4j.renderer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The cloze deletions of one field value, parsed once.
+ * <p>
+ * A field such as {@code "{{c1::Paris::city}} is in {{c2::France}}"} is split
+ * into text and cloze spans so that every sibling card of a note can be rendered
+ * from the same index without scanning the field again. Clozes may nest, e.g.
+ * {@code "{{c1::outer {{c2::inner}}}}"}.
+ */
+public final class ClozeIndex {
+
+    private final Node[] nodes;
+    private final int[] clozeNumbers;
+
+    private ClozeIndex(Node[] nodes, int[] clozeNumbers) {
+        this.nodes = nodes;
+        this.clozeNumbers = clozeNumbers;
+    }
+
+    /**
+     * Returns the distinct cloze numbers found in the field, in ascending order.
+     * Card ordinals of a cloze note are these numbers minus one.
+     */
+    public int[] getClozeNumbers() {
+        return clozeNumbers.clone();
+    }
+
+    public boolean hasClozes() {
+        return clozeNumbers.length > 0;
+    }
+
+    public boolean contains(int clozeNumber) {
+        return Arrays.binarySearch(clozeNumbers, clozeNumber) >= 0;
+    }
+
+    /**
+     * Renders the field for the card showing cloze {@code clozeNumber}.
+     *
+     * @param question true for the question side, where the active cloze is
+     *                 replaced by its hint or {@code [...]}
+     */
+    public String render(int clozeNumber, boolean question) {
+        StringBuilder out = new StringBuilder();
+        render(clozeNumber, question, out);
+        return out.toString();
+    }
+
+    void render(int clozeNumber, boolean question, StringBuilder out) {
+        renderNodes(nodes, clozeNumber, question, out);
+    }
+
+    private static void renderNodes(Node[] nodes, int clozeNumber, boolean question, StringBuilder out) {
+        for (Node node : nodes) {
+            if (node instanceof Text) {
+                out.append(((Text) node).text);
+                continue;
+            }
+            Cloze cloze = (Cloze) node;
+            if (cloze.number != clozeNumber) {
+                renderNodes(cloze.children, clozeNumber, question, out);
+            } else if (question) {
+                out.append("<span class=\"cloze\">[").append(cloze.hint != null ? cloze.hint : "...")
+                        .append("]</span>");
+            } else {
+                out.append("<span class=\"cloze\">");
+                renderNodes(cloze.children, clozeNumber, question, out);
+                out.append("</span>");
+            }
+        }
+    }
+
+    // ==================== Parsing ====================
+
+    public static ClozeIndex parse(String text) {
+        if (text == null || text.indexOf("{{c") < 0) {
+            return new ClozeIndex(text == null || text.isEmpty() ? new Node[0] : new Node[] { new Text(text) },
+                    new int[0]);
+        }
+
+        List<Node> root = new ArrayList<>();
+        Deque<Frame> open = new ArrayDeque<>();
+        TreeSet<Integer> numbers = new TreeSet<>();
+        int length = text.length();
+        int textStart = 0;
+        int pos = 0;
+
+        while (pos < length) {
+            Frame top = open.peek();
+            if (top != null && top.hintStart >= 0) {
+                // Inside a hint: everything up to the closing braces is plain text
+                int close = text.indexOf("}}", pos);
+                if (close < 0) {
+                    pos = length;
+                    break;
+                }
+                top.hint = text.substring(top.hintStart, close);
+                pos = close + 2;
+                textStart = pos;
+                closeFrame(open, root, numbers);
+                continue;
+            }
+
+            int digitsEnd = openingDigitsEnd(text, pos);
+            if (digitsEnd > 0) {
+                addText(open, root, text, textStart, pos);
+                open.push(new Frame(Integer.parseInt(text.substring(pos + 3, digitsEnd))));
+                pos = digitsEnd + 2;
+                textStart = pos;
+            } else if (top != null && text.startsWith("::", pos)) {
+                addText(open, root, text, textStart, pos);
+                top.hintStart = pos + 2;
+                pos += 2;
+                textStart = pos;
+            } else if (top != null && text.startsWith("}}", pos)) {
+                addText(open, root, text, textStart, pos);
+                pos += 2;
+                textStart = pos;
+                closeFrame(open, root, numbers);
+            } else {
+                pos++;
+            }
+        }
+
+        // Unclosed clozes are kept as the literal text they were written as
+        Frame top = open.peek();
+        if (top != null && top.hintStart >= 0 && top.hint == null) {
+            textStart = length;
+        }
+        addText(open, root, text, textStart, length);
+        while (!open.isEmpty()) {
+            Frame frame = open.pop();
+            List<Node> target = open.isEmpty() ? root : open.peek().children;
+            target.add(new Text("{{c" + frame.number + "::"));
+            target.addAll(frame.children);
+            if (frame.hintStart >= 0) {
+                target.add(new Text("::" + text.substring(frame.hintStart)));
+            }
+        }
+
+        int[] clozeNumbers = numbers.stream().mapToInt(Integer::intValue).toArray();
+        return new ClozeIndex(root.toArray(new Node[0]), clozeNumbers);
+    }
+
+    /**
+     * Returns the index of the {@code ::} that ends a cloze opening tag starting at
+     * {@code pos}, or -1 if no cloze opens there.
+     */
+    private static int openingDigitsEnd(String text, int pos) {
+        if (!text.startsWith("{{c", pos)) {
+            return -1;
+        }
+        int i = pos + 3;
+        while (i < text.length() && Character.isDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == pos + 3 || !text.startsWith("::", i)) {
+            return -1;
+        }
+        return i;
+    }
+
+    private static void addText(Deque<Frame> open, List<Node> root, String text, int start, int end) {
+        if (end > start) {
+            (open.isEmpty() ? root : open.peek().children).add(new Text(text.substring(start, end)));
+        }
+    }
+
+    private static void closeFrame(Deque<Frame> open, List<Node> root, TreeSet<Integer> numbers) {
+        Frame frame = open.pop();
+        numbers.add(frame.number);
+        Cloze cloze = new Cloze(frame.number, frame.children.toArray(new Node[0]), frame.hint);
+        (open.isEmpty() ? root : open.peek().children).add(cloze);
+    }
+
+    private static final class Frame {
+        final int number;
+        final List<Node> children = new ArrayList<>();
+        int hintStart = -1;
+        String hint;
+
+        Frame(int number) {
+            this.number = number;
+        }
+    }
+
+    private interface Node {
+    }
+
+    private static final class Text implements Node {
+        final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Cloze implements Node {
+        final int number;
+        final Node[] children;
+        final String hint;
+
+        Cloze(int number, Node[] children, String hint) {
+            this.number = number;
+            this.children = children;
+            this.hint = hint;
+        }
+    }
+}
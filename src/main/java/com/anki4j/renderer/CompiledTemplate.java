@@ -0,0 +1,299 @@
+package com.anki4j.renderer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A card template parsed once into a tree of nodes, with field names resolved
+ * to ordinals of a {@link FieldLayout}.
+ * <p>
+ * Rendering walks the tree and appends to a single {@link StringBuilder}; no
+ * regular expression runs and no tag is re-parsed per card. Sections
+ * ({@code {{#Field}}...{{/Field}}} and {@code {{^Field}}...{{/Field}}}) nest and
+ * repeat freely. A section that is never closed renders its opening tag as
+ * text, and a closing tag without a matching section is kept as text.
+ */
+final class CompiledTemplate {
+
+    private final String source;
+    private final Node[] nodes;
+    private final int literalLength;
+    private final boolean usesFrontSide;
+    private final int[] clozeOrdinals;
+
+    private CompiledTemplate(String source, Node[] nodes, int literalLength, boolean usesFrontSide,
+            int[] clozeOrdinals) {
+        this.source = source;
+        this.nodes = nodes;
+        this.literalLength = literalLength;
+        this.usesFrontSide = usesFrontSide;
+        this.clozeOrdinals = clozeOrdinals;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns true if the template contains {@code {{FrontSide}}}, i.e. needs the
+     * rendered question to render.
+     */
+    boolean usesFrontSide() {
+        return usesFrontSide;
+    }
+
+    /**
+     * Returns the ordinals of the fields referenced by {@code {{cloze:Field}}} tags.
+     */
+    int[] clozeOrdinals() {
+        return clozeOrdinals;
+    }
+
+    /**
+     * Returns true if rendering with {@code fields} would output at least one
+     * non-blank field, which is how Anki decides whether a template produces a
+     * card. Text outside of field tags does not count.
+     */
+    boolean hasNonEmptyField(NoteFields fields) {
+        return anyNonEmpty(nodes, fields);
+    }
+
+    private static boolean anyNonEmpty(Node[] nodes, NoteFields fields) {
+        for (Node node : nodes) {
+            if (node.hasNonEmptyField(fields)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    String render(RenderContext context) {
+        StringBuilder out = new StringBuilder(literalLength + 256);
+        for (Node node : nodes) {
+            node.render(context, out);
+        }
+        return out.toString();
+    }
+
+    // ==================== Parsing ====================
+
+    static CompiledTemplate compile(String source, FieldLayout layout) {
+        Deque<SectionBuilder> open = new ArrayDeque<>();
+        SectionBuilder root = new SectionBuilder(null, false, null);
+        int literalLength = 0;
+        boolean usesFrontSide = false;
+        List<Integer> clozeOrdinals = new ArrayList<>();
+
+        int pos = 0;
+        while (pos < source.length()) {
+            int start = source.indexOf("{{", pos);
+            int end = start < 0 ? -1 : source.indexOf("}}", start + 2);
+            if (start < 0 || end < 0) {
+                literalLength += addText(current(open, root), source.substring(pos));
+                break;
+            }
+            if (start > pos) {
+                literalLength += addText(current(open, root), source.substring(pos, start));
+            }
+
+            String rawTag = source.substring(start, end + 2);
+            String inner = source.substring(start + 2, end).trim();
+            pos = end + 2;
+
+            if (inner.startsWith("#") || inner.startsWith("^")) {
+                open.push(new SectionBuilder(inner.substring(1).trim(), inner.charAt(0) == '^', rawTag));
+            } else if (inner.startsWith("/")) {
+                String name = inner.substring(1).trim();
+                if (!open.isEmpty() && open.peek().fieldName.equals(name)) {
+                    SectionBuilder section = open.pop();
+                    current(open, root).children.add(section.build(layout));
+                } else {
+                    literalLength += addText(current(open, root), rawTag);
+                }
+            } else {
+                TagNode tag = TagNode.parse(inner, layout);
+                usesFrontSide |= tag.kind == TagNode.Kind.FRONT_SIDE;
+                if (tag.kind == TagNode.Kind.CLOZE && tag.ordinal >= 0 && !clozeOrdinals.contains(tag.ordinal)) {
+                    clozeOrdinals.add(tag.ordinal);
+                }
+                current(open, root).children.add(tag);
+            }
+        }
+
+        // Unclosed sections: keep the opening tag as text and inline their content
+        while (!open.isEmpty()) {
+            SectionBuilder section = open.pop();
+            List<Node> target = current(open, root).children;
+            literalLength += addText(current(open, root), section.rawTag);
+            target.addAll(section.children);
+        }
+
+        return new CompiledTemplate(source, root.children.toArray(new Node[0]), literalLength, usesFrontSide,
+                clozeOrdinals.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static SectionBuilder current(Deque<SectionBuilder> open, SectionBuilder root) {
+        return open.isEmpty() ? root : open.peek();
+    }
+
+    private static int addText(SectionBuilder target, String text) {
+        target.children.add(new TextNode(text));
+        return text.length();
+    }
+
+    private static final class SectionBuilder {
+        final String fieldName;
+        final boolean negative;
+        final String rawTag;
+        final List<Node> children = new ArrayList<>();
+
+        SectionBuilder(String fieldName, boolean negative, String rawTag) {
+            this.fieldName = fieldName;
+            this.negative = negative;
+            this.rawTag = rawTag;
+        }
+
+        Node build(FieldLayout layout) {
+            return new SectionNode(layout.ordinal(fieldName), negative, children.toArray(new Node[0]));
+        }
+    }
+
+    // ==================== Nodes ====================
+
+    private interface Node {
+        void render(RenderContext context, StringBuilder out);
+
+        default boolean hasNonEmptyField(NoteFields fields) {
+            return false;
+        }
+    }
+
+    private static final class TextNode implements Node {
+        private final String text;
+
+        TextNode(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(RenderContext context, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    private static final class SectionNode implements Node {
+        private final int ordinal;
+        private final boolean negative;
+        private final Node[] children;
+
+        SectionNode(int ordinal, boolean negative, Node[] children) {
+            this.ordinal = ordinal;
+            this.negative = negative;
+            this.children = children;
+        }
+
+        @Override
+        public void render(RenderContext context, StringBuilder out) {
+            boolean fieldHasContent = !context.fields.isBlank(ordinal);
+            // {{#Field}} renders if the field is not empty, {{^Field}} if it is
+            if (fieldHasContent != negative) {
+                for (Node child : children) {
+                    child.render(context, out);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNonEmptyField(NoteFields fields) {
+            return !fields.isBlank(ordinal) != negative && anyNonEmpty(children, fields);
+        }
+    }
+
+    private static final class TagNode implements Node {
+        private enum Kind {
+            FIELD, FRONT_SIDE, CLOZE, TYPE, HINT
+        }
+
+        private final Kind kind;
+        private final String fieldName;
+        private final int ordinal;
+        // For modifiers such as text:Field, the field to fall back to when the full tag is not a field
+        private final int fallbackOrdinal;
+
+        private TagNode(Kind kind, String fieldName, int ordinal, int fallbackOrdinal) {
+            this.kind = kind;
+            this.fieldName = fieldName;
+            this.ordinal = ordinal;
+            this.fallbackOrdinal = fallbackOrdinal;
+        }
+
+        static TagNode parse(String inner, FieldLayout layout) {
+            if ("FrontSide".equals(inner)) {
+                return new TagNode(Kind.FRONT_SIDE, null, -1, -1);
+            } else if (inner.startsWith("cloze:")) {
+                return field(Kind.CLOZE, inner.substring(6), layout);
+            } else if (inner.startsWith("type:")) {
+                return field(Kind.TYPE, inner.substring(5), layout);
+            } else if (inner.startsWith("hint:")) {
+                return field(Kind.HINT, inner.substring(5), layout);
+            }
+            int fallback = -1;
+            if (inner.contains(":")) {
+                String[] parts = inner.split(":");
+                if (parts.length > 1) {
+                    fallback = layout.ordinal(parts[parts.length - 1]);
+                }
+            }
+            return new TagNode(Kind.FIELD, inner, layout.ordinal(inner), fallback);
+        }
+
+        private static TagNode field(Kind kind, String fieldName, FieldLayout layout) {
+            return new TagNode(kind, fieldName, layout.ordinal(fieldName), -1);
+        }
+
+        @Override
+        public boolean hasNonEmptyField(NoteFields fields) {
+            if (kind == Kind.FRONT_SIDE) {
+                return false;
+            }
+            return !fields.isBlank(ordinal) || (kind == Kind.FIELD && !fields.isBlank(fallbackOrdinal));
+        }
+
+        @Override
+        public void render(RenderContext context, StringBuilder out) {
+            switch (kind) {
+                case FRONT_SIDE:
+                    if (context.frontSide != null) {
+                        out.append(context.frontSide);
+                    }
+                    break;
+                case CLOZE:
+                    context.clozeIndex(context.fields.value(ordinal))
+                            .render(context.clozeNumber, context.question, out);
+                    break;
+                case TYPE:
+                    out.append("<input type='text' value='' class='type-input' />");
+                    break;
+                case HINT:
+                    if (!context.fields.isEmpty(ordinal)) {
+                        out.append("<a class='hint' href='#' onclick='this.style.display=\"none\";")
+                                .append("document.getElementById(\"hint_").append(fieldName)
+                                .append("\").style.display=\"block\";return false;'>Show ").append(fieldName)
+                                .append("</a><div id='hint_").append(fieldName).append("' style='display:none'>");
+                        context.fields.appendTo(ordinal, out);
+                        out.append("</div>");
+                    }
+                    break;
+                default:
+                    if (context.fields.isEmpty(ordinal)) {
+                        context.fields.appendTo(fallbackOrdinal, out);
+                    } else {
+                        context.fields.appendTo(ordinal, out);
+                    }
+                    break;
+            }
+        }
+    }
+}
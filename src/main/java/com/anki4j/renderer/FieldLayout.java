@@ -0,0 +1,77 @@
+package com.anki4j.renderer;
+
+import com.anki4j.model.Field;
+import com.anki4j.model.Model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Field names of a {@link Model} resolved to ordinals once, together with the
+ * model's templates compiled against those ordinals.
+ */
+final class FieldLayout {
+
+    // Templates are few per model; the bound only guards against unbounded ad-hoc input
+    private static final int MAX_CACHED_TEMPLATES = 1024;
+
+    private final List<Field> source;
+    private final String[] names;
+    private final Map<String, Integer> ordinals;
+    private final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+    private FieldLayout(List<Field> source) {
+        this.source = source;
+        int size = source != null ? source.size() : 0;
+        this.names = new String[size];
+        this.ordinals = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            names[i] = source.get(i).getName();
+            ordinals.put(names[i], i);
+        }
+    }
+
+    static FieldLayout of(Model model) {
+        return new FieldLayout(model.getFlds());
+    }
+
+    /**
+     * Returns true if this layout was built from the model's current field list.
+     */
+    boolean matches(Model model) {
+        return source == model.getFlds() && names.length == (source != null ? source.size() : 0);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String name(int ordinal) {
+        return names[ordinal];
+    }
+
+    /**
+     * Returns the ordinal of a field, or -1 if the model has no such field.
+     */
+    int ordinal(String name) {
+        Integer ordinal = ordinals.get(name);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * Returns the compiled form of a template, parsing it on first use only.
+     */
+    CompiledTemplate template(String template) {
+        CompiledTemplate compiled = templates.get(template);
+        if (compiled == null) {
+            if (templates.size() >= MAX_CACHED_TEMPLATES) {
+                templates.clear();
+            }
+            compiled = CompiledTemplate.compile(template, this);
+            templates.put(template, compiled);
+        }
+        return compiled;
+    }
+}
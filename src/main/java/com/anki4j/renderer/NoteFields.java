@@ -0,0 +1,73 @@
+package com.anki4j.renderer;
+
+/**
+ * A view of a note's {@code flds} column split on the 0x1F separator.
+ * <p>
+ * Only field offsets are recorded; values are appended straight from the
+ * backing string and a substring is created only when a caller asks for one.
+ */
+final class NoteFields {
+
+    private static final char SEPARATOR = '\u001F';
+
+    private final String flds;
+    // starts[i] is the offset of field i; field i ends one character before starts[i + 1]
+    private final int[] starts;
+
+    NoteFields(String flds) {
+        this.flds = flds != null ? flds : "";
+        int count = 1;
+        for (int i = 0; i < this.flds.length(); i++) {
+            if (this.flds.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+        this.starts = new int[count + 1];
+        int field = 1;
+        for (int i = 0; i < this.flds.length(); i++) {
+            if (this.flds.charAt(i) == SEPARATOR) {
+                starts[field++] = i + 1;
+            }
+        }
+        starts[count] = this.flds.length() + 1;
+    }
+
+    int count() {
+        return starts.length - 1;
+    }
+
+    /**
+     * Returns the value of a field; missing fields and unknown ordinals are empty.
+     */
+    String value(int ordinal) {
+        if (ordinal < 0 || ordinal >= count()) {
+            return "";
+        }
+        return flds.substring(starts[ordinal], starts[ordinal + 1] - 1);
+    }
+
+    boolean isEmpty(int ordinal) {
+        return ordinal < 0 || ordinal >= count() || starts[ordinal] == starts[ordinal + 1] - 1;
+    }
+
+    /**
+     * Returns true if the field is missing or holds only whitespace, matching {@link String#trim()}.
+     */
+    boolean isBlank(int ordinal) {
+        if (ordinal < 0 || ordinal >= count()) {
+            return true;
+        }
+        for (int i = starts[ordinal]; i < starts[ordinal + 1] - 1; i++) {
+            if (flds.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void appendTo(int ordinal, StringBuilder out) {
+        if (ordinal >= 0 && ordinal < count()) {
+            out.append(flds, starts[ordinal], starts[ordinal + 1] - 1);
+        }
+    }
+}
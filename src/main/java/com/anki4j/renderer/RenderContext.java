@@ -0,0 +1,26 @@
+package com.anki4j.renderer;
+
+/**
+ * Per-render state passed down a {@link CompiledTemplate}.
+ */
+final class RenderContext {
+    final NoteFields fields;
+    final String frontSide;
+    // 1-based cloze number of the card being rendered (card ordinal + 1)
+    final int clozeNumber;
+    final boolean question;
+    private final Renderer renderer;
+
+    RenderContext(Renderer renderer, NoteFields fields, String frontSide, int clozeNumber,
+            boolean question) {
+        this.renderer = renderer;
+        this.fields = fields;
+        this.frontSide = frontSide;
+        this.clozeNumber = clozeNumber;
+        this.question = question;
+    }
+
+    ClozeIndex clozeIndex(String value) {
+        return renderer.clozeIndex(value);
+    }
+}
@@ -1,145 +1,151 @@
 package com.anki4j.renderer;
 
-import com.anki4j.model.Field;
 import com.anki4j.model.Model;
 import com.anki4j.model.Note;
 import com.anki4j.model.Template;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Renderer {
 
-    // Regex for conditional blocks: {{#FieldName}}...{{/FieldName}}
-    private static final Pattern CONDITIONAL_PATTERN = Pattern.compile(
-            "\\{\\{#([^}]+)\\}\\}(.*?)\\{\\{/\\1\\}\\}", Pattern.DOTALL);
+    // Sibling cards of a cloze note are usually rendered together, so a small window is enough
+    private static final int MAX_CACHED_CLOZE_FIELDS = 256;
 
-    // Regex for negative conditional blocks: {{^FieldName}}...{{/FieldName}}
-    private static final Pattern NEGATIVE_CONDITIONAL_PATTERN = Pattern.compile(
-            "\\{\\{\\^([^}]+)\\}\\}(.*?)\\{\\{/\\1\\}\\}", Pattern.DOTALL);
+    // Field layouts and their compiled templates, keyed by model ID
+    private final Map<Long, FieldLayout> layouts = new ConcurrentHashMap<>();
 
-    // Regex to match simple {{...}} tags
-    private static final Pattern TAG_PATTERN = Pattern.compile("\\{\\{[^}#/^]+\\}\\}");
+    // Cloze indexes keyed by field value, least recently used evicted first
+    private final Map<String, ClozeIndex> clozeIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ClozeIndex> eldest) {
+            return size() > MAX_CACHED_CLOZE_FIELDS;
+        }
+    };
 
     /**
      * Renders a full RenderedCard object containing fields, front, back, and CSS.
      */
     public RenderedCard renderCard(Note note, Model model, Template template) {
-        Map<String, String> fieldValues = getFieldMap(note, model);
-        String front = render(template.getQfmt(), fieldValues, null);
-        String back = render(template.getAfmt(), fieldValues, front);
+        return renderCard(note, model, template, 0);
+    }
+
+    /**
+     * Renders a card of the given ordinal. For cloze models the ordinal selects
+     * which {@code {{cN::...}}} deletion is hidden ({@code N = ord + 1}).
+     */
+    public RenderedCard renderCard(Note note, Model model, Template template, int ord) {
+        FieldLayout layout = layoutFor(model);
+        NoteFields fields = new NoteFields(note.getFlds());
+        String front = render(layout, template.getQfmt(), fields, null, ord, true);
+        String back = render(layout, template.getAfmt(), fields, front, ord, false);
         String css = model.getCss() != null ? model.getCss() : "";
-        return new RenderedCard(fieldValues, front, back, css);
+        return new RenderedCard(toMap(layout, fields), front, back, css);
     }
 
     public String renderQuestion(Note note, Model model, Template template) {
-        Map<String, String> fieldValues = getFieldMap(note, model);
-        return render(template.getQfmt(), fieldValues, null);
+        return renderQuestion(note, model, template, 0);
+    }
+
+    public String renderQuestion(Note note, Model model, Template template, int ord) {
+        return render(layoutFor(model), template.getQfmt(), new NoteFields(note.getFlds()), null, ord, true);
     }
 
     public String renderAnswer(Note note, Model model, Template template) {
-        Map<String, String> fieldValues = getFieldMap(note, model);
-        String questionSide = render(template.getQfmt(), fieldValues, null);
-        return render(template.getAfmt(), fieldValues, questionSide);
+        return renderAnswer(note, model, template, 0);
+    }
+
+    public String renderAnswer(Note note, Model model, Template template, int ord) {
+        FieldLayout layout = layoutFor(model);
+        NoteFields fields = new NoteFields(note.getFlds());
+        String questionSide = null;
+        // The question is only needed when the answer template embeds it
+        if (template.getAfmt() != null && layout.template(template.getAfmt()).usesFrontSide()) {
+            questionSide = render(layout, template.getQfmt(), fields, null, ord, true);
+        }
+        return render(layout, template.getAfmt(), fields, questionSide, ord, false);
+    }
+
+    /**
+     * Returns the ordinals of the cards a note generates, in ascending order.
+     * <p>
+     * A standard model produces one card per template whose question renders at
+     * least one non-empty field. A cloze model produces one card per distinct
+     * {@code {{cN::...}}} number in the fields its template clozes, with ordinal
+     * {@code N - 1}.
+     */
+    public int[] cardOrdinals(Note note, Model model) {
+        FieldLayout layout = layoutFor(model);
+        NoteFields fields = new NoteFields(note.getFlds());
+        List<Template> templates = model.getTmpls() != null ? model.getTmpls() : List.of();
+        if (model.isCloze()) {
+            if (templates.isEmpty() || templates.get(0).getQfmt() == null) {
+                return new int[0];
+            }
+            TreeSet<Integer> numbers = new TreeSet<>();
+            for (int ordinal : layout.template(templates.get(0).getQfmt()).clozeOrdinals()) {
+                for (int number : clozeIndex(fields.value(ordinal)).getClozeNumbers()) {
+                    numbers.add(number);
+                }
+            }
+            return numbers.stream().filter(n -> n > 0).mapToInt(n -> n - 1).toArray();
+        }
+        int[] ordinals = new int[templates.size()];
+        int count = 0;
+        for (int i = 0; i < templates.size(); i++) {
+            String qfmt = templates.get(i).getQfmt();
+            if (qfmt != null && layout.template(qfmt).hasNonEmptyField(fields)) {
+                ordinals[count++] = i;
+            }
+        }
+        return java.util.Arrays.copyOf(ordinals, count);
     }
 
     /**
      * Creates a field map from Note content using Model field definitions.
      */
     public Map<String, String> getFieldMap(Note note, Model model) {
-        String[] rawValues = note.getFlds().split("\u001F"); // Unit Separator 0x1F
-        Map<String, String> map = new HashMap<>();
+        return toMap(layoutFor(model), new NoteFields(note.getFlds()));
+    }
 
-        for (int i = 0; i < model.getFlds().size(); i++) {
-            Field field = model.getFlds().get(i);
-            String value = (i < rawValues.length) ? rawValues[i] : "";
-            map.put(field.getName(), value);
+    private Map<String, String> toMap(FieldLayout layout, NoteFields fields) {
+        Map<String, String> map = new HashMap<>(layout.size() * 2);
+        for (int i = 0; i < layout.size(); i++) {
+            map.put(layout.name(i), fields.value(i));
         }
         return map;
     }
 
-    private String render(String template, Map<String, String> fieldValues, String frontSide) {
+    private String render(FieldLayout layout, String template, NoteFields fields, String frontSide, int ord,
+            boolean question) {
         if (template == null)
             return "";
-
-        // Pass 1: Process positive conditional blocks {{#Field}}...{{/Field}}
-        String result = processConditionals(template, fieldValues, false);
-
-        // Pass 2: Process negative conditional blocks {{^Field}}...{{/Field}}
-        result = processConditionals(result, fieldValues, true);
-
-        // Pass 3: Substitute simple tags
-        result = substituteSimpleTags(result, fieldValues, frontSide);
-
-        return result;
+        return layout.template(template).render(new RenderContext(this, fields, frontSide, ord + 1, question));
     }
 
-    private String processConditionals(String template, Map<String, String> fieldValues, boolean negative) {
-        Pattern pattern = negative ? NEGATIVE_CONDITIONAL_PATTERN : CONDITIONAL_PATTERN;
-        Matcher matcher = pattern.matcher(template);
-        StringBuffer sb = new StringBuffer();
-
-        while (matcher.find()) {
-            String fieldName = matcher.group(1).trim();
-            String blockContent = matcher.group(2);
-
-            String value = fieldValues.getOrDefault(fieldName, "");
-            boolean fieldHasContent = value != null && !value.trim().isEmpty();
-
-            String replacement;
-            if (negative) {
-                // {{^Field}} - render if field IS empty
-                replacement = fieldHasContent ? "" : blockContent;
-            } else {
-                // {{#Field}} - render if field is NOT empty
-                replacement = fieldHasContent ? blockContent : "";
-            }
-            matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+    /**
+     * Returns the field layout of a model, rebuilding it if the model's fields were replaced.
+     */
+    private FieldLayout layoutFor(Model model) {
+        FieldLayout layout = layouts.get(model.getId());
+        if (layout == null || !layout.matches(model)) {
+            layout = FieldLayout.of(model);
+            layouts.put(model.getId(), layout);
         }
-        matcher.appendTail(sb);
-        return sb.toString();
+        return layout;
     }
 
-    private String substituteSimpleTags(String template, Map<String, String> fieldValues, String frontSide) {
-        Matcher matcher = TAG_PATTERN.matcher(template);
-        StringBuffer sb = new StringBuffer();
-
-        while (matcher.find()) {
-            String tag = matcher.group();
-            String inner = tag.substring(2, tag.length() - 2).trim(); // Remove {{ and }}
-            String replacement = "";
-
-            if ("FrontSide".equals(inner)) {
-                replacement = (frontSide != null) ? frontSide : "";
-            } else if (inner.startsWith("cloze:")) {
-                String fieldName = inner.substring(6);
-                replacement = fieldValues.getOrDefault(fieldName, "");
-            } else if (inner.startsWith("type:")) {
-                replacement = "<input type='text' value='' class='type-input' />";
-            } else if (inner.startsWith("hint:")) {
-                String fieldName = inner.substring(5);
-                String value = fieldValues.getOrDefault(fieldName, "");
-                if (!value.isEmpty()) {
-                    replacement = "<a class='hint' href='#' onclick='this.style.display=\"none\";document.getElementById(\"hint_"
-                            + fieldName + "\").style.display=\"block\";return false;'>Show " + fieldName
-                            + "</a><div id='hint_" + fieldName + "' style='display:none'>" + value + "</div>";
-                }
-            } else {
-                // Standard field replacement or modifiers like text:Field
-                replacement = fieldValues.getOrDefault(inner, "");
-                if (replacement.isEmpty() && inner.contains(":")) {
-                    String[] parts = inner.split(":");
-                    if (parts.length > 1) {
-                        String fieldName = parts[parts.length - 1];
-                        replacement = fieldValues.getOrDefault(fieldName, "");
-                    }
-                }
-            }
-            matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+    /**
+     * Returns the cloze index of a field value, parsing it only once for all
+     * sibling cards of a note.
+     */
+    ClozeIndex clozeIndex(String value) {
+        synchronized (clozeIndexes) {
+            return clozeIndexes.computeIfAbsent(value, ClozeIndex::parse);
         }
-        matcher.appendTail(sb);
-        return sb.toString();
     }
 }
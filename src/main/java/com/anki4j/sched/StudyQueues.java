@@ -0,0 +1,79 @@
+package com.anki4j.sched;
+
+import com.anki4j.model.Card;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The cards of a deck (and its child decks) that can be studied now, split
+ * into Anki's three queues, each in due order.
+ */
+public class StudyQueues {
+    public static final int DEFAULT_NEW_LIMIT = 20;
+    public static final int DEFAULT_REVIEW_LIMIT = 200;
+
+    private long deckId;
+    private int today; // day number the review queue was built for
+    private List<Card> newCards = new ArrayList<>();
+    private List<Card> learningCards = new ArrayList<>();
+    private List<Card> reviewCards = new ArrayList<>();
+
+    public StudyQueues() {
+    }
+
+    public int size() {
+        return newCards.size() + learningCards.size() + reviewCards.size();
+    }
+
+    // Getters and Setters
+    public long getDeckId() {
+        return deckId;
+    }
+
+    public void setDeckId(long deckId) {
+        this.deckId = deckId;
+    }
+
+    public int getToday() {
+        return today;
+    }
+
+    public void setToday(int today) {
+        this.today = today;
+    }
+
+    /**
+     * @return new cards (queue 0) by position, up to the new card limit
+     */
+    public List<Card> getNewCards() {
+        return newCards;
+    }
+
+    public void setNewCards(List<Card> newCards) {
+        this.newCards = newCards;
+    }
+
+    /**
+     * @return learning cards due now: intraday learning (queue 1) by due time,
+     *         followed by interday learning (queue 3) by due day
+     */
+    public List<Card> getLearningCards() {
+        return learningCards;
+    }
+
+    public void setLearningCards(List<Card> learningCards) {
+        this.learningCards = learningCards;
+    }
+
+    /**
+     * @return review cards (queue 2) due today or overdue, up to the review limit
+     */
+    public List<Card> getReviewCards() {
+        return reviewCards;
+    }
+
+    public void setReviewCards(List<Card> reviewCards) {
+        this.reviewCards = reviewCards;
+    }
+}
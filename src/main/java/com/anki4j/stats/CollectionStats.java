@@ -0,0 +1,220 @@
+package com.anki4j.stats;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Review statistics for a collection or a deck, as shown on Anki's statistics
+ * screen.
+ * <p>
+ * Day numbers count days since the collection was created ({@code col.crt}),
+ * which is also the unit of {@code cards.due} for review cards. Arrays covering
+ * a window of days are indexed from the oldest day ({@code reviewsPerDay}) or
+ * from today ({@code dueForecast}). The object holds only primitives and small
+ * maps, so it is cheap to cache.
+ */
+public class CollectionStats implements Serializable {
+    public static final int DEFAULT_DAYS = 30;
+
+    private long deckId = -1; // -1 for the whole collection
+    private long generatedAt; // epoch millis
+    private int today; // day number of the generation time
+    private int days;
+
+    // Whole review history
+    private long totalReviews;
+    private long totalTimeMillis;
+    private long reviewCount; // reviews of cards in the review queue (revlog type 1)
+    private long passedReviewCount; // of those, answered Hard, Good or Easy
+
+    // Last `days` days, oldest first; the last element is today
+    private long[] reviewsPerDay = new long[0];
+    private long[] timePerDay = new long[0];
+
+    // Last `days` days by hour of day (local time)
+    private long[] reviewsByHour = new long[24];
+    private long[] passedByHour = new long[24];
+
+    // Next `days` days from today; overdue cards count as due today
+    private long[] dueForecast = new long[0];
+
+    // Cards by queue
+    private long newCards;
+    private long learningCards;
+    private long reviewCards;
+    private long suspendedCards;
+
+    // Review cards by interval in days
+    private Map<Integer, Long> intervalHistogram = new TreeMap<>();
+
+    public CollectionStats() {
+    }
+
+    /**
+     * @return share of review-queue answers that were not Again, the "true
+     *         retention" of Anki's statistics, or 0 if there were none
+     */
+    public double getTrueRetention() {
+        return reviewCount == 0 ? 0 : (double) passedReviewCount / reviewCount;
+    }
+
+    /**
+     * @return average reviews per day over the window
+     */
+    public double getAverageReviewsPerDay() {
+        if (reviewsPerDay.length == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (long reviews : reviewsPerDay) {
+            sum += reviews;
+        }
+        return (double) sum / reviewsPerDay.length;
+    }
+
+    // Getters and Setters
+    public long getDeckId() {
+        return deckId;
+    }
+
+    public void setDeckId(long deckId) {
+        this.deckId = deckId;
+    }
+
+    public long getGeneratedAt() {
+        return generatedAt;
+    }
+
+    public void setGeneratedAt(long generatedAt) {
+        this.generatedAt = generatedAt;
+    }
+
+    public int getToday() {
+        return today;
+    }
+
+    public void setToday(int today) {
+        this.today = today;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public void setDays(int days) {
+        this.days = days;
+    }
+
+    public long getTotalReviews() {
+        return totalReviews;
+    }
+
+    public void setTotalReviews(long totalReviews) {
+        this.totalReviews = totalReviews;
+    }
+
+    public long getTotalTimeMillis() {
+        return totalTimeMillis;
+    }
+
+    public void setTotalTimeMillis(long totalTimeMillis) {
+        this.totalTimeMillis = totalTimeMillis;
+    }
+
+    public long getReviewCount() {
+        return reviewCount;
+    }
+
+    public void setReviewCount(long reviewCount) {
+        this.reviewCount = reviewCount;
+    }
+
+    public long getPassedReviewCount() {
+        return passedReviewCount;
+    }
+
+    public void setPassedReviewCount(long passedReviewCount) {
+        this.passedReviewCount = passedReviewCount;
+    }
+
+    public long[] getReviewsPerDay() {
+        return reviewsPerDay;
+    }
+
+    public void setReviewsPerDay(long[] reviewsPerDay) {
+        this.reviewsPerDay = reviewsPerDay;
+    }
+
+    public long[] getTimePerDay() {
+        return timePerDay;
+    }
+
+    public void setTimePerDay(long[] timePerDay) {
+        this.timePerDay = timePerDay;
+    }
+
+    public long[] getReviewsByHour() {
+        return reviewsByHour;
+    }
+
+    public void setReviewsByHour(long[] reviewsByHour) {
+        this.reviewsByHour = reviewsByHour;
+    }
+
+    public long[] getPassedByHour() {
+        return passedByHour;
+    }
+
+    public void setPassedByHour(long[] passedByHour) {
+        this.passedByHour = passedByHour;
+    }
+
+    public long[] getDueForecast() {
+        return dueForecast;
+    }
+
+    public void setDueForecast(long[] dueForecast) {
+        this.dueForecast = dueForecast;
+    }
+
+    public long getNewCards() {
+        return newCards;
+    }
+
+    public void setNewCards(long newCards) {
+        this.newCards = newCards;
+    }
+
+    public long getLearningCards() {
+        return learningCards;
+    }
+
+    public void setLearningCards(long learningCards) {
+        this.learningCards = learningCards;
+    }
+
+    public long getReviewCards() {
+        return reviewCards;
+    }
+
+    public void setReviewCards(long reviewCards) {
+        this.reviewCards = reviewCards;
+    }
+
+    public long getSuspendedCards() {
+        return suspendedCards;
+    }
+
+    public void setSuspendedCards(long suspendedCards) {
+        this.suspendedCards = suspendedCards;
+    }
+
+    public Map<Integer, Long> getIntervalHistogram() {
+        return intervalHistogram;
+    }
+
+    public void setIntervalHistogram(Map<Integer, Long> intervalHistogram) {
+        this.intervalHistogram = intervalHistogram;
+    }
+}
@@ -0,0 +1,211 @@
+package com.anki4j.stats;
+
+import java.util.Arrays;
+
+/**
+ * A columnar, in-memory copy of the {@code revlog} table.
+ * <p>
+ * Each column is a primitive array indexed by row, and rows are sorted by card
+ * ID and then by review ID (i.e. time), so the history of one card is a
+ * contiguous range. Compared with one {@link com.anki4j.model.Revlog} per
+ * review this uses about a fifth of the memory, and the aggregate helpers are
+ * plain loops over primitive arrays that the JIT can vectorize.
+ */
+public final class RevlogSnapshot {
+
+    private final int size;
+    private final long[] id;
+    private final long[] cid;
+    private final int[] ease;
+    private final int[] ivl;
+    private final int[] lastIvl;
+    private final int[] factor;
+    private final int[] time;
+    private final int[] type;
+
+    // Distinct card IDs in ascending order; cardStart[i] is the first row of cardIds[i]
+    private final long[] cardIds;
+    private final int[] cardStart;
+
+    /**
+     * Wraps column arrays without copying them. The first {@code size} rows must
+     * be sorted by {@code cid} and then {@code id}.
+     */
+    public RevlogSnapshot(int size, long[] id, long[] cid, int[] ease, int[] ivl, int[] lastIvl, int[] factor,
+            int[] time, int[] type) {
+        this.size = size;
+        this.id = id;
+        this.cid = cid;
+        this.ease = ease;
+        this.ivl = ivl;
+        this.lastIvl = lastIvl;
+        this.factor = factor;
+        this.time = time;
+        this.type = type;
+
+        int cards = 0;
+        for (int row = 0; row < size; row++) {
+            if (row == 0 || cid[row] != cid[row - 1]) {
+                cards++;
+            }
+        }
+        this.cardIds = new long[cards];
+        this.cardStart = new int[cards + 1];
+        int card = 0;
+        for (int row = 0; row < size; row++) {
+            if (row == 0 || cid[row] != cid[row - 1]) {
+                cardIds[card] = cid[row];
+                cardStart[card++] = row;
+            }
+        }
+        cardStart[cards] = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int cardCount() {
+        return cardIds.length;
+    }
+
+    /**
+     * @return the IDs of the cards with at least one review, in ascending order
+     */
+    public long[] getCardIds() {
+        return cardIds.clone();
+    }
+
+    // ==================== Row access ====================
+
+    public long getId(int row) {
+        return id[row];
+    }
+
+    public long getCid(int row) {
+        return cid[row];
+    }
+
+    public int getEase(int row) {
+        return ease[row];
+    }
+
+    public int getIvl(int row) {
+        return ivl[row];
+    }
+
+    public int getLastIvl(int row) {
+        return lastIvl[row];
+    }
+
+    public int getFactor(int row) {
+        return factor[row];
+    }
+
+    public int getTime(int row) {
+        return time[row];
+    }
+
+    public int getType(int row) {
+        return type[row];
+    }
+
+    // ==================== Per-card history ====================
+
+    /**
+     * @return the first row of the card's history; equal to
+     *         {@link #historyEnd(long)} if the card has no reviews
+     */
+    public int historyStart(long cardId) {
+        int card = Arrays.binarySearch(cardIds, cardId);
+        return card >= 0 ? cardStart[card] : insertionRow(card);
+    }
+
+    /**
+     * @return the row after the last review of the card
+     */
+    public int historyEnd(long cardId) {
+        int card = Arrays.binarySearch(cardIds, cardId);
+        return card >= 0 ? cardStart[card + 1] : insertionRow(card);
+    }
+
+    private int insertionRow(int notFound) {
+        return cardStart[-notFound - 1];
+    }
+
+    // ==================== Aggregates ====================
+
+    /**
+     * @return review counts indexed by ease (answer button), 0 to 4
+     */
+    public long[] countByEase() {
+        return countByEase(0, size);
+    }
+
+    public long[] countByEase(int fromRow, int toRow) {
+        return countBy(ease, fromRow, toRow, 5);
+    }
+
+    /**
+     * @return review counts indexed by revlog type: 0 learn, 1 review, 2 relearn,
+     *         3 filtered, 4 manual
+     */
+    public long[] countByType() {
+        return countBy(type, 0, size, 5);
+    }
+
+    /**
+     * @return milliseconds spent answering, summed over all reviews
+     */
+    public long totalTime() {
+        return totalTime(0, size);
+    }
+
+    public long totalTime(int fromRow, int toRow) {
+        long sum = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            sum += time[row];
+        }
+        return sum;
+    }
+
+    /**
+     * @return milliseconds spent answering, indexed by revlog type
+     */
+    public long[] timeByType() {
+        long[] sums = new long[5];
+        for (int row = 0; row < size; row++) {
+            int t = type[row];
+            if (t >= 0 && t < sums.length) {
+                sums[t] += time[row];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * @return average ease factor (permille) of the reviews in the range, or 0 if
+     *         the range is empty
+     */
+    public double averageFactor(int fromRow, int toRow) {
+        if (toRow <= fromRow) {
+            return 0;
+        }
+        long sum = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            sum += factor[row];
+        }
+        return (double) sum / (toRow - fromRow);
+    }
+
+    private static long[] countBy(int[] column, int fromRow, int toRow, int buckets) {
+        long[] counts = new long[buckets];
+        for (int row = fromRow; row < toRow; row++) {
+            int value = column[row];
+            if (value >= 0 && value < buckets) {
+                counts[value]++;
+            }
+        }
+        return counts;
+    }
+}
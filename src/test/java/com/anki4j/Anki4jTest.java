@@ -3,6 +3,7 @@ package com.anki4j;
 import com.anki4j.model.Card;
 import com.anki4j.model.Deck;
 import com.anki4j.model.Note;
+import com.anki4j.model.Revlog;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -16,6 +17,8 @@ import java.sql.DriverManager;
 import java.sql.Statement;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -81,6 +84,9 @@ public class Anki4jTest {
 
             stmt.execute("INSERT INTO notes (id, guid, flds, mid) VALUES (10, 'guid1', 'Front\u001fBack', 1)");
             stmt.execute("INSERT INTO cards (id, nid, did, ord) VALUES (1000, 10, 100, 0)");
+            stmt.execute("INSERT INTO revlog (id, cid, usn, ease, ivl, lastIvl, factor, time, type) VALUES "
+                    + "(1000, 1000, 0, 3, 1, 0, 2500, 8000, 0), (2000, 1000, 0, 3, 3, 1, 2500, 6000, 1), "
+                    + "(3000, 1000, 0, 1, -600, 3, 2300, 12000, 1)");
         }
 
         // 2. Zip it into .apkg
@@ -179,6 +185,195 @@ public class Anki4jTest {
         }
     }
 
+    @Test
+    public void testBatchRendering() {
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString())) {
+            java.util.Map<Long, com.anki4j.renderer.RenderedCard> deck = anki.renderDeck(100);
+            assertEquals(1, deck.size());
+            assertEquals("Front", deck.get(1000L).getFront());
+            assertEquals("Front<hr id=answer>Back", deck.get(1000L).getBack());
+
+            Card orphan = new Card(2000, 99, 100, 0);
+            java.util.Map<Long, com.anki4j.renderer.RenderedCard> rendered = anki
+                    .renderCards(List.of(orphan, anki.getCard(1000).get()));
+            assertEquals(List.of(1000L), new java.util.ArrayList<>(rendered.keySet()));
+        }
+    }
+
+    @Test
+    public void testStreaming() {
+        OpenOptions options = new OpenOptions();
+        options.setFetchSize(2);
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString(), options)) {
+            try (Stream<Card> cards = anki.streamCards(100)) {
+                assertEquals(List.of(1000L), cards.map(Card::getId).collect(Collectors.toList()));
+            }
+            try (Stream<Card> cards = anki.streamCards(1)) {
+                assertEquals(0, cards.count());
+            }
+            try (Stream<Note> notes = anki.streamNotes(1)) {
+                assertEquals("Front\u001fBack", notes.findFirst().get().getFlds());
+            }
+
+            // A stream abandoned half way must not block later queries
+            Stream<Revlog> revlogs = anki.streamRevlogs();
+            assertEquals(1000L, revlogs.findFirst().get().getId());
+            revlogs.close();
+
+            try (Stream<Revlog> window = anki.streamRevlogs(2000, 3000)) {
+                assertEquals(List.of(2000L), window.map(Revlog::getId).collect(Collectors.toList()));
+            }
+
+            java.util.List<Long> seen = new java.util.ArrayList<>();
+            anki.forEachRevlog(r -> seen.add(r.getId()));
+            assertEquals(List.of(1000L, 2000L, 3000L), seen);
+            assertEquals(3, anki.getRevlogs().size());
+        }
+    }
+
+    @Test
+    public void testRevlogSnapshot() {
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString())) {
+            com.anki4j.stats.RevlogSnapshot snapshot = anki.getRevlogSnapshot();
+            assertEquals(3, snapshot.size());
+            assertEquals(1, snapshot.cardCount());
+            assertEquals(0, snapshot.historyStart(1000));
+            assertEquals(3, snapshot.historyEnd(1000));
+            assertEquals(snapshot.historyStart(5), snapshot.historyEnd(5));
+            assertEquals(3000L, snapshot.getId(2));
+
+            long[] byEase = snapshot.countByEase();
+            assertEquals(1, byEase[1]);
+            assertEquals(2, byEase[3]);
+            assertEquals(26000L, snapshot.totalTime());
+            assertEquals(18000L, snapshot.timeByType()[1]);
+        }
+    }
+
+    @Test
+    public void testStatistics() {
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString())) {
+            com.anki4j.stats.CollectionStats stats = anki.getStats();
+            assertEquals(3, stats.getTotalReviews());
+            assertEquals(26000L, stats.getTotalTimeMillis());
+            assertEquals(0.5, stats.getTrueRetention(), 1e-9);
+            assertEquals(1, stats.getNewCards());
+            assertEquals(30, stats.getReviewsPerDay().length);
+
+            java.util.Map<Long, com.anki4j.stats.CollectionStats> byDeck = anki.getStatsByDeck(7);
+            assertEquals(java.util.Set.of(100L), byDeck.keySet());
+            assertEquals(3, byDeck.get(100L).getTotalReviews());
+            assertEquals(0, anki.getStats(1, 7).getTotalReviews());
+
+            // A deck's statistics include its child decks
+            anki.addDeck(new Deck(101L, "Test Deck::Child"));
+            anki.addCard(new Card(1001L, 10L, 101L, 0));
+            assertEquals(2, anki.getStats(100, 7).getNewCards());
+            assertEquals(3, anki.getStats(100, 7).getTotalReviews());
+            assertEquals(100L, anki.getStats(100, 7).getDeckId());
+            assertEquals(1, anki.getStats(101, 7).getNewCards());
+            assertEquals(0, anki.getStats(101, 7).getTotalReviews());
+        }
+    }
+
+    @Test
+    public void testStandardIndexes() throws Exception {
+        OpenOptions options = new OpenOptions();
+        options.setCreateIndexes(true);
+        byte[] indexed;
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString(), options)) {
+            assertEquals(1, anki.getCards(100).size());
+            indexed = anki.export();
+        }
+        assertTrue(exportedIndexes(indexed).containsAll(List.of("ix_cards_nid", "ix_cards_sched", "ix_revlog_cid")));
+
+        options.setDropIndexesOnExport(true);
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString(), options)) {
+            assertTrue(exportedIndexes(anki.export()).isEmpty());
+        }
+    }
+
+    @Test
+    public void testStandardIndexesQueryPlans() throws Exception {
+        String byDeck = "SELECT id FROM cards WHERE did = 100";
+        String byNote = "SELECT id FROM cards WHERE nid = 10";
+        String byCard = "SELECT id FROM revlog WHERE cid = 1000";
+
+        byte[] plain;
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString())) {
+            plain = anki.export();
+        }
+        assertTrue(queryPlan(plain, byDeck).contains("SCAN cards"));
+        assertTrue(queryPlan(plain, byNote).contains("SCAN cards"));
+        assertTrue(queryPlan(plain, byCard).contains("SCAN revlog"));
+
+        OpenOptions options = new OpenOptions();
+        options.setCreateIndexes(true);
+        byte[] indexed;
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString(), options)) {
+            indexed = anki.export();
+        }
+        assertTrue(queryPlan(indexed, byDeck).contains("ix_cards_sched"));
+        assertTrue(queryPlan(indexed, byNote).contains("ix_cards_nid"));
+        assertTrue(queryPlan(indexed, byCard).contains("ix_revlog_cid"));
+    }
+
+    private String queryPlan(byte[] apkg, String sql) throws Exception {
+        StringBuilder plan = new StringBuilder();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + exportedDatabase(apkg).toAbsolutePath());
+                Statement stmt = conn.createStatement();
+                java.sql.ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                plan.append(rs.getString("detail")).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private Path exportedDatabase(byte[] apkg) throws Exception {
+        Path dbCopy = tempTestDir.resolve("exported.anki21");
+        try (java.util.zip.ZipInputStream zis = new java.util.zip.ZipInputStream(
+                new java.io.ByteArrayInputStream(apkg))) {
+            for (ZipEntry entry; (entry = zis.getNextEntry()) != null;) {
+                if (entry.getName().equals("collection.anki21")) {
+                    Files.copy(zis, dbCopy, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        return dbCopy;
+    }
+
+    private List<String> exportedIndexes(byte[] apkg) throws Exception {
+        List<String> names = new java.util.ArrayList<>();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + exportedDatabase(apkg).toAbsolutePath());
+                Statement stmt = conn.createStatement();
+                java.sql.ResultSet rs = stmt.executeQuery(
+                        "SELECT name FROM sqlite_master WHERE type = 'index' AND name LIKE 'ix_%'")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void testScanReusesRowObject() {
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString())) {
+            java.util.Set<Revlog> instances = java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+            long[] totalTime = new long[1];
+            anki.scanRevlogs(r -> {
+                instances.add(r);
+                totalTime[0] += r.getTime();
+            });
+            assertEquals(1, instances.size());
+            assertEquals(26000L, totalTime[0]);
+
+            List<Long> cardIds = new java.util.ArrayList<>();
+            anki.scanCards(100, c -> cardIds.add(c.getId()));
+            assertEquals(List.of(1000L), cardIds);
+        }
+    }
+
     private void createMediaApkg() throws Exception {
         // 1. Create a temporary SQLite DB (LEGACY: No 'decks' table, data in 'col')
         Path dbPath = tempTestDir.resolve("collection.anki2");
@@ -275,6 +470,33 @@ public class Anki4jTest {
         }
     }
 
+    @Test
+    public void testLazyMediaSupport() throws Exception {
+        createMediaApkg();
+        OpenOptions options = new OpenOptions();
+        options.setLazyMedia(true);
+        options.setMediaCacheBytes(16);
+
+        try (AnkiCollection anki = AnkiCollection.read(apkgPath.toString(), options)) {
+            Optional<byte[]> imageBytes = anki.getMediaContent("bird.jpg");
+            assertTrue(imageBytes.isPresent());
+            assertEquals("IMAGE_DATA", new String(imageBytes.get()));
+
+            Optional<byte[]> audioBytes = anki.getMediaContent("chirp.mp3");
+            assertTrue(audioBytes.isPresent());
+            assertEquals("AUDIO_DATA", new String(audioBytes.get()));
+
+            // Evicted from the 16-byte cache, re-read from the archive
+            assertEquals("IMAGE_DATA", new String(anki.getMediaContent("bird.jpg").get()));
+            assertFalse(anki.getMediaContent("missing.png").isPresent());
+
+            // Lazily indexed media survives an export round trip
+            try (AnkiCollection reRead = AnkiCollection.read(anki.export())) {
+                assertEquals("AUDIO_DATA", new String(reRead.getMediaContent("chirp.mp3").get()));
+            }
+        }
+    }
+
     @Test
     public void testReadLegacyDecks() throws Exception {
         createLegacyApkg();
@@ -318,6 +540,177 @@ public class Anki4jTest {
         }
     }
 
+    @Test
+    public void testWriteBehindSave() throws Exception {
+        try (AnkiCollection anki = Anki4j.read(apkgPath.toString())) {
+            // Loaded notes are clean, so saving an untouched one writes nothing
+            Note untouched = anki.getNote(10).get();
+            assertFalse(untouched.isDirty());
+            anki.save(untouched);
+            anki.flush();
+            Note reloaded = anki.getNotesByIds(10).get(0);
+            assertEquals(untouched.getMod(), reloaded.getMod());
+            assertEquals(untouched.getUsn(), reloaded.getUsn());
+
+            Note note = anki.getNote(10).get();
+            com.anki4j.model.NoteFieldsMap fields = new com.anki4j.model.NoteFieldsMap(
+                    anki.getModel(note.getMid()).get(), note.getFlds());
+            fields.set("Front", "<i>Deferred</i>");
+            anki.save(note, fields);
+            assertFalse(fields.isDirty());
+
+            // Not written yet, but point lookups see the saved version
+            assertSame(note, anki.getNote(10).get());
+            assertTrue(note.isDirty());
+
+            // Bulk reads flush first
+            Note stored = anki.getNotesByIds(10).get(0);
+            assertNotSame(note, stored);
+            assertEquals("<i>Deferred</i>\u001fBack", stored.getFlds());
+            assertEquals("Deferred", stored.getSfld());
+            assertEquals(-1, stored.getUsn());
+            assertEquals(stored.getCsum(), note.getCsum());
+            assertFalse(note.isDirty());
+
+            // A missing note fails the flush and nothing is written
+            note.setFlds("Lost\u001fBack");
+            anki.save(note);
+            Note missing = new Note(999L, null, "Missing\u001fBack", 1L);
+            missing.setDirty(true);
+            anki.save(missing);
+            assertThrows(com.anki4j.exception.AnkiException.class, anki::flush);
+            assertSame(note, anki.getNote(10).get());
+
+            // The other saved notes are written by the next flush
+            assertEquals("Lost\u001fBack", anki.getNotesByIds(10).get(0).getFlds());
+        }
+    }
+
+    @Test
+    public void testCloseReleasesResourcesWhenWriteFails() throws Exception {
+        Path workDir = Files.createDirectory(tempTestDir.resolve("failing"));
+        OpenOptions options = new OpenOptions();
+        options.setFileBackedDatabase(true);
+        options.setWorkDirectory(workDir);
+
+        AnkiCollection anki = AnkiCollection.read(apkgPath.toString(), options);
+        Note missing = new Note(999L, null, "Missing\u001fBack", 1L);
+        missing.setDirty(true);
+        anki.save(missing);
+        assertThrows(com.anki4j.exception.AnkiException.class, anki::close);
+
+        try (java.util.stream.Stream<Path> files = Files.list(workDir)) {
+            assertEquals("Extracted database should be deleted even if saving fails", 0, files.count());
+        }
+    }
+
+    @Test
+    public void testFileBackedDatabase() throws Exception {
+        Path workDir = Files.createDirectory(tempTestDir.resolve("work"));
+        OpenOptions options = new OpenOptions();
+        options.setFileBackedDatabase(true);
+        options.setWorkDirectory(workDir);
+        options.setMmapSize(64L * 1024 * 1024);
+        options.setCacheSizeKib(4096);
+
+        try (AnkiCollection anki = AnkiCollection.read(apkgPath.toString(), options)) {
+            try (java.util.stream.Stream<Path> files = Files.list(workDir)) {
+                assertEquals("Database should be extracted to the work directory", 1, files.count());
+            }
+            assertEquals("Test Deck", anki.getDeck(100).get().getName());
+
+            Note note = anki.getNote(10).get();
+            note.setFlds("File Front\u001fFile Back");
+            anki.save(note);
+        }
+
+        try (java.util.stream.Stream<Path> files = Files.list(workDir)) {
+            assertEquals("Extracted database should be deleted on close", 0, files.count());
+        }
+        try (AnkiCollection anki = AnkiCollection.read(apkgPath.toString())) {
+            assertEquals("File Front\u001fFile Back", anki.getNote(10).get().getFlds());
+        }
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        Path workDir = Files.createDirectory(tempTestDir.resolve("concurrent"));
+        OpenOptions options = new OpenOptions();
+        options.setConcurrent(true);
+        options.setReadConnections(3);
+        options.setWorkDirectory(workDir);
+
+        try (AnkiCollection anki = AnkiCollection.read(apkgPath.toString(), options)) {
+            java.util.concurrent.ExecutorService readers = java.util.concurrent.Executors.newFixedThreadPool(4);
+            java.util.concurrent.atomic.AtomicBoolean writing = new java.util.concurrent.atomic.AtomicBoolean(true);
+            List<java.util.concurrent.Future<Integer>> results = new java.util.ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(readers.submit(() -> {
+                    int reads = 0;
+                    while (writing.get() || reads == 0) {
+                        // Other threads only ever see committed transactions
+                        int cards = anki.getCards(100).size();
+                        assertTrue("Unexpected card count " + cards, cards == 1 || cards == 51);
+                        try (Stream<Card> stream = anki.streamCards()) {
+                            long streamed = stream.count();
+                            assertTrue(streamed == 1 || streamed == 51);
+                        }
+                        assertEquals("Test Deck", anki.getDeck(100).get().getName());
+                        assertTrue(anki.getNote(10).isPresent());
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+
+            try (AnkiTransaction tx = anki.beginTransaction()) {
+                for (int i = 0; i < 50; i++) {
+                    anki.addCard(new Card(5000L + i, 10L, 100L, 0));
+                }
+                // The writing thread sees its own changes
+                assertEquals(51, anki.getCards(100).size());
+                tx.commit();
+            }
+            writing.set(false);
+            for (java.util.concurrent.Future<Integer> result : results) {
+                assertTrue(result.get(30, java.util.concurrent.TimeUnit.SECONDS) > 0);
+            }
+            readers.shutdown();
+            assertEquals(51, anki.getCards(100).size());
+        }
+
+        try (java.util.stream.Stream<Path> files = Files.list(workDir)) {
+            assertEquals("Database, WAL and shared-memory files should be deleted on close", 0, files.count());
+        }
+        try (AnkiCollection anki = AnkiCollection.read(apkgPath.toString())) {
+            assertEquals(51, anki.getCards(100).size());
+        }
+        try (java.util.zip.ZipFile zip = new java.util.zip.ZipFile(apkgPath.toFile());
+                java.io.InputStream in = zip.getInputStream(zip.getEntry("collection.anki21"))) {
+            byte[] header = in.readNBytes(20);
+            assertEquals("Exported database should not require WAL files", 1, header[18]);
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testNestedReadsWithSingleReadConnection() throws Exception {
+        OpenOptions options = new OpenOptions();
+        options.setConcurrent(true);
+        options.setReadConnections(1);
+        options.setWorkDirectory(Files.createDirectory(tempTestDir.resolve("nested")));
+
+        try (AnkiCollection anki = AnkiCollection.read(apkgPath.toString(), options)) {
+            List<String> fields = new java.util.ArrayList<>();
+            anki.forEachCard(card -> fields.add(anki.getNote(card.getNid()).get().getFlds()));
+            assertEquals(List.of("Front\u001fBack"), fields);
+
+            // The connection is back in the pool for other threads
+            java.util.concurrent.ExecutorService other = java.util.concurrent.Executors.newSingleThreadExecutor();
+            assertEquals(1, (int) other.submit(() -> anki.getCards().size()).get());
+            other.shutdown();
+        }
+    }
+
     @Test
     public void testReadFromInputStream() throws Exception {
         try (java.io.InputStream is = Files.newInputStream(apkgPath);
@@ -8,6 +8,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.Assert.*;
@@ -97,4 +98,460 @@ public class AnkiCreationTest {
             }
         }
     }
+
+    @Test
+    public void testExportToPathAndStream() throws IOException {
+        Path dir = Files.createTempDirectory("anki4j_export_test");
+        Path target = dir.resolve("out.apkg");
+        try (AnkiCollection anki = Anki4j.create()) {
+            anki.addDeck(new Deck(1L, "Default"));
+            anki.addMedia("sound.mp3", "AUDIO".getBytes());
+
+            anki.export(target);
+            java.io.ByteArrayOutputStream streamed = new java.io.ByteArrayOutputStream();
+            anki.export(streamed);
+
+            try (AnkiCollection fromFile = Anki4j.read(target.toString());
+                    AnkiCollection fromStream = Anki4j.read(streamed.toByteArray())) {
+                assertEquals("Default", fromFile.getDeck(1L).get().getName());
+                assertArrayEquals("AUDIO".getBytes(), fromFile.getMediaContent("sound.mp3").get());
+                assertEquals("Default", fromStream.getDeck(1L).get().getName());
+            }
+
+            try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+                assertEquals("Only the target should remain after an atomic export", 1, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(target);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void testExportStoresCompressedMedia() throws IOException {
+        byte[] png = new byte[] { (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 1, 2, 3, 4 };
+        byte[] text = "body { color: red; } body { color: red; }".getBytes();
+        byte[] utf16 = "\uFEFFplain text, plain text".getBytes(java.nio.charset.StandardCharsets.UTF_16LE);
+        byte[] mp3 = new byte[] { (byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x64, 0, 0, 0, 0 };
+
+        try (AnkiCollection anki = Anki4j.create()) {
+            anki.addMedia("photo.jpg", "JPEG_BY_EXTENSION".getBytes());
+            anki.addMedia("unnamed", png);
+            anki.addMedia("style.css", text);
+            anki.addMedia("notes", utf16);
+            anki.addMedia("sound", mp3);
+
+            byte[] apkg = anki.export(ExportOptions.fast());
+
+            java.util.Map<String, Integer> methods = new java.util.HashMap<>();
+            try (java.util.zip.ZipInputStream zis = new java.util.zip.ZipInputStream(
+                    new java.io.ByteArrayInputStream(apkg))) {
+                java.util.zip.ZipEntry entry;
+                while ((entry = zis.getNextEntry()) != null) {
+                    methods.put(entry.getName(), entry.getMethod());
+                }
+            }
+            assertEquals(Integer.valueOf(java.util.zip.ZipEntry.DEFLATED), methods.get("collection.anki21"));
+            assertEquals(Integer.valueOf(java.util.zip.ZipEntry.STORED), methods.get("0"));
+            assertEquals(Integer.valueOf(java.util.zip.ZipEntry.STORED), methods.get("1"));
+            assertEquals(Integer.valueOf(java.util.zip.ZipEntry.DEFLATED), methods.get("2"));
+            assertEquals("UTF-16LE byte order mark is not MPEG audio",
+                    Integer.valueOf(java.util.zip.ZipEntry.DEFLATED), methods.get("3"));
+            assertEquals(Integer.valueOf(java.util.zip.ZipEntry.STORED), methods.get("4"));
+
+            try (AnkiCollection reRead = Anki4j.read(apkg)) {
+                assertArrayEquals(png, reRead.getMediaContent("unnamed").get());
+                assertArrayEquals(text, reRead.getMediaContent("style.css").get());
+            }
+        }
+    }
+
+    @Test
+    public void testParallelExport() throws Exception {
+        java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(4);
+        try (AnkiCollection anki = Anki4j.create()) {
+            anki.addDeck(new Deck(1L, "Default"));
+
+            // Spans several chunks, with repeated content so the dictionary matters
+            StringBuilder large = new StringBuilder();
+            java.util.Random random = new java.util.Random(42);
+            while (large.length() < 300 * 1024) {
+                large.append("card-").append(random.nextInt(1000)).append(' ');
+            }
+            byte[] largeMedia = large.toString().getBytes();
+            byte[] jpeg = new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 1, 2, 3 };
+            anki.addMedia("notes.txt", largeMedia);
+            anki.addMedia("photo.jpg", jpeg);
+            anki.addMedia("empty.txt", new byte[0]);
+            for (int i = 0; i < 50; i++) {
+                anki.addMedia("small" + i + ".txt", ("small media " + i).getBytes());
+            }
+
+            ExportOptions options = ExportOptions.parallel(executor);
+            options.setChunkSize(ExportOptions.MIN_CHUNK_SIZE);
+            options.setParallelism(3);
+            byte[] apkg = anki.export(options);
+
+            // Readable sequentially, relying on local headers and data descriptors
+            java.util.Map<String, byte[]> contents = new java.util.HashMap<>();
+            try (java.util.zip.ZipInputStream zis = new java.util.zip.ZipInputStream(
+                    new java.io.ByteArrayInputStream(apkg))) {
+                java.util.zip.ZipEntry entry;
+                while ((entry = zis.getNextEntry()) != null) {
+                    contents.put(entry.getName(), zis.readAllBytes());
+                }
+            }
+            assertEquals(55, contents.size());
+            assertTrue(contents.containsKey("collection.anki21"));
+
+            // And through the central directory
+            try (AnkiCollection reRead = Anki4j.read(apkg)) {
+                assertEquals("Default", reRead.getDeck(1L).get().getName());
+                assertArrayEquals(largeMedia, reRead.getMediaContent("notes.txt").get());
+                assertArrayEquals(jpeg, reRead.getMediaContent("photo.jpg").get());
+                assertArrayEquals(new byte[0], reRead.getMediaContent("empty.txt").get());
+                assertArrayEquals("small media 7".getBytes(), reRead.getMediaContent("small7.txt").get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBatchLookups() {
+        try (AnkiCollection anki = Anki4j.create()) {
+            int noteCount = 1200; // spans several IN-list chunks
+            for (int i = 1; i <= noteCount; i++) {
+                anki.addNote(new Note(i, null, "Front " + i + "\u001fBack " + i, 1L));
+                anki.addCard(new Card(10_000L + i, i, 1L, 0));
+            }
+
+            List<Card> cards = anki.getCardsByIds(10_900L, 10_001L, 99L, 10_900L);
+            assertEquals(3, cards.size());
+            assertEquals(10_900L, cards.get(0).getId());
+            assertEquals(10_001L, cards.get(1).getId());
+            assertEquals(10_900L, cards.get(2).getId());
+
+            long[] noteIds = new long[noteCount];
+            for (int i = 0; i < noteCount; i++) {
+                noteIds[i] = noteCount - i;
+            }
+            List<Note> notes = anki.getNotesByIds(noteIds);
+            assertEquals(noteCount, notes.size());
+            assertEquals(noteCount, notes.get(0).getId());
+            assertEquals(1L, notes.get(noteCount - 1).getId());
+
+            List<Note> cardNotes = anki.getNotesForCards(10_005L, 12_345_678L, 10_002L);
+            assertEquals(2, cardNotes.size());
+            assertEquals(5L, cardNotes.get(0).getId());
+            assertEquals("Front 2\u001fBack 2", cardNotes.get(1).getFlds());
+
+            // Large sets go through a temporary table join
+            long[] manyIds = new long[25_000];
+            for (int i = 0; i < manyIds.length; i++) {
+                manyIds[i] = 35_000L - i;
+            }
+            List<Card> many = anki.getCardsByIds(manyIds);
+            assertEquals(noteCount, many.size());
+            assertEquals(10_000L + noteCount, many.get(0).getId());
+        }
+    }
+
+    @Test
+    public void testDueForecast() {
+        try (AnkiCollection anki = Anki4j.create()) {
+            anki.addNote(new Note(1L, null, "Front\u001fBack", 1L));
+            Card review = new Card(10L, 1L, 1L, 0);
+            review.setType(2);
+            review.setQueue(2);
+            review.setDue(3); // day number; the collection was created today
+            review.setIvl(5);
+            anki.addCard(review);
+
+            com.anki4j.stats.CollectionStats stats = anki.getStats(1L, 7);
+            assertEquals(0, stats.getToday());
+            assertEquals(1, stats.getDueForecast()[3]);
+            assertEquals(1, stats.getReviewCards());
+            assertEquals(Long.valueOf(1), stats.getIntervalHistogram().get(5));
+        }
+    }
+
+    @Test
+    public void testStudyQueues() {
+        try (AnkiCollection anki = Anki4j.create()) {
+            anki.addDeck(new Deck(10L, "Languages"));
+            anki.addDeck(new Deck(11L, "Languages::French"));
+            anki.addDeck(new Deck(12L, "Languages Extra"));
+            anki.addNote(new Note(1L, null, "Front\u001fBack", 1L));
+
+            long now = System.currentTimeMillis() / 1000;
+            addScheduledCard(anki, 100L, 10L, 0, 2);
+            addScheduledCard(anki, 101L, 11L, 0, 1);
+            addScheduledCard(anki, 102L, 11L, 0, 3);
+            addScheduledCard(anki, 103L, 12L, 0, 1); // not a child deck
+            addScheduledCard(anki, 104L, 11L, 1, now - 60);
+            addScheduledCard(anki, 105L, 10L, 1, now + 3600); // not due yet
+            addScheduledCard(anki, 106L, 10L, 2, 0);
+            addScheduledCard(anki, 107L, 11L, 2, -3);
+            addScheduledCard(anki, 108L, 10L, 2, 5); // due in the future
+
+            com.anki4j.sched.StudyQueues queues = anki.getStudyQueues(10L, 2, -1);
+            assertEquals(List.of(101L, 100L), ids(queues.getNewCards()));
+            assertEquals(List.of(104L), ids(queues.getLearningCards()));
+            assertEquals(List.of(107L, 106L), ids(queues.getReviewCards()));
+
+            assertEquals(1, anki.getStudyQueues(11L, 1, 1).getReviewCards().size());
+
+            // Hierarchy lookups
+            assertEquals(11L, anki.getDeckByName("languages::french").get().getId());
+            assertEquals(List.of(11L), anki.getChildDecks(10L).stream().map(Deck::getId)
+                    .collect(java.util.stream.Collectors.toList()));
+            assertArrayEquals(new long[] { 11L }, anki.getDescendantDeckIds(10L));
+            Map<Long, Long> counts = anki.getDeckCardCounts();
+            assertEquals(Long.valueOf(8), counts.get(10L)); // 4 own + 4 in Languages::French
+            assertEquals(Long.valueOf(4), counts.get(11L));
+            assertEquals(Long.valueOf(1), counts.get(12L));
+
+            anki.addDeck(new Deck(13L, "Languages::French::Verbs"));
+            assertArrayEquals(new long[] { 11L, 13L }, anki.getDescendantDeckIds(10L));
+        }
+    }
+
+    @Test
+    public void testBulkImport() throws IOException {
+        try (AnkiCollection anki = Anki4j.create()) {
+            List<Note> notes = new java.util.ArrayList<>();
+            List<Card> cards = new java.util.ArrayList<>();
+            for (int i = 1; i <= 20_000; i++) {
+                notes.add(new Note(i, null, "Front " + i + "\u001fBack " + i, 1L));
+                cards.add(new Card(100_000L + i, i, 1L, 0));
+            }
+            anki.addNotes(notes.subList(0, 10_000));
+            anki.addCards(cards.subList(0, 10_000));
+
+            try (BulkImporter importer = anki.bulkImporter().batchSize(1000).fastWrites(true)) {
+                importer.addNotes(notes.subList(10_000, 20_000)).addCards(cards.subList(10_000, 20_000));
+                assertEquals(20_000, importer.execute());
+                assertThrows(IllegalStateException.class, () -> importer.batchSize(10));
+            }
+            assertEquals(20_000, anki.getNotes().size());
+            assertEquals(20_000, anki.getCards().size());
+            assertEquals("Front 15000\u001fBack 15000", anki.getNote(15_000L).get().getFlds());
+
+            // Rows of an importer closed without execute() are rolled back
+            try (BulkImporter importer = anki.bulkImporter()) {
+                importer.addNote(new Note(50_000L, null, "Front\u001fBack", 1L));
+            }
+            assertFalse(anki.getNote(50_000L).isPresent());
+
+            // A duplicate ID fails the whole batch
+            assertThrows(com.anki4j.exception.AnkiException.class,
+                    () -> anki.addNotes(List.of(new Note(60_000L, null, "A\u001fB", 1L), notes.get(0))));
+            assertFalse(anki.getNote(60_000L).isPresent());
+
+            // Rows queued by a failed call are not inserted by the next one
+            assertThrows(NullPointerException.class,
+                    () -> anki.addNotes(java.util.Arrays.asList(new Note(70_000L, null, "A\u001fB", 1L), null)));
+            anki.addNotes(List.of(new Note(70_001L, null, "C\u001fD", 1L)));
+            assertFalse(anki.getNote(70_000L).isPresent());
+            assertTrue(anki.getNote(70_001L).isPresent());
+            assertThrows(NullPointerException.class,
+                    () -> anki.addCards(java.util.Arrays.asList(new Card(170_000L, 70_001L, 1L, 0), null)));
+            anki.addCards(List.of(new Card(170_001L, 70_001L, 1L, 0)));
+            assertFalse(anki.getCard(170_000L).isPresent());
+            assertTrue(anki.getCard(170_001L).isPresent());
+
+            try (AnkiCollection reRead = Anki4j.read(anki.export())) {
+                assertEquals(20_001, reRead.getCards().size());
+            }
+        }
+    }
+
+    @Test
+    public void testSaveInsideScan() {
+        try (AnkiCollection anki = Anki4j.create()) {
+            anki.addNotes(List.of(new Note(1L, null, "One\u001fA", 1L), new Note(2L, null, "Two\u001fB", 1L),
+                    new Note(3L, null, "Three\u001fC", 1L)));
+
+            // The scan reuses one Note object, so every save must record its own row
+            anki.scanNotes(note -> {
+                note.setFlds("EDIT" + note.getId() + "\u001f");
+                anki.save(note);
+            });
+            assertEquals("EDIT1\u001f", anki.getNote(1L).get().getFlds());
+            anki.flush();
+
+            List<Note> notes = anki.getNotesByIds(1L, 2L, 3L);
+            assertEquals(List.of("EDIT1\u001f", "EDIT2\u001f", "EDIT3\u001f"),
+                    notes.stream().map(Note::getFlds).collect(java.util.stream.Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testNoteBuilder() {
+        try (AnkiCollection anki = Anki4j.create()) {
+            Model basic = new Model();
+            basic.setId(1L);
+            basic.setName("Basic (optional reversed)");
+            basic.setFlds(List.of(field("Front", 0), field("Back", 1), field("Add Reverse", 2)));
+            basic.setSortf(1);
+            basic.setTmpls(List.of(template("{{Front}}"), template("{{#Add Reverse}}{{Back}}{{/Add Reverse}}")));
+            anki.addModel(basic);
+
+            Model cloze = new Model();
+            cloze.setId(2L);
+            cloze.setName("Cloze");
+            cloze.setType(Model.TYPE_CLOZE);
+            cloze.setFlds(List.of(field("Text", 0), field("Extra", 1)));
+            cloze.setTmpls(List.of(template("{{cloze:Text}}")));
+            anki.addModel(cloze);
+
+            List<Note> notes = anki.noteBuilder(basic, 1L)
+                    .tags("vocab", "french")
+                    .add("<b>bonjour</b>", "hello")
+                    .add(Map.of("Front", "merci", "Back", "thanks", "Add Reverse", "y"))
+                    .insert();
+            Note first = notes.get(0);
+            assertEquals(527556852L, first.getCsum());
+            assertEquals("hello", first.getSfld());
+            assertEquals(" vocab french ", first.getTags());
+            assertTrue(notes.get(1).getId() > first.getId());
+            assertEquals(List.of(0), ords(anki.getNote(first.getId()).get(), anki));
+            assertEquals(List.of(0, 1), ords(notes.get(1), anki));
+
+            Note clozeNote = anki.noteBuilder(cloze, 1L)
+                    .add("{{c1::Paris}} is in {{c3::France}}")
+                    .insert().get(0);
+            assertEquals(List.of(0, 2), ords(clozeNote, anki));
+            assertEquals(3, anki.getCards().stream().mapToLong(Card::getDue).max().getAsLong());
+
+            NoteBuilder empty = anki.noteBuilder(basic, 1L);
+            assertThrows(IllegalArgumentException.class, () -> empty.add("", "back only"));
+            assertThrows(IllegalArgumentException.class, () -> empty.add(Map.of("Nope", "x")));
+        }
+    }
+
+    @Test
+    public void testDeckJsonIsCachedAndFlushed() {
+        try (AnkiCollection anki = Anki4j.create()) {
+            for (int i = 1; i <= 200; i++) {
+                anki.addDeck(new Deck(1000L + i, "Deck " + i));
+            }
+            assertEquals("Deck 7", anki.getDeck(1007L).get().getName());
+
+            anki.addDeck(new Deck(1007L, "Renamed"));
+            String json = anki.getCol().get().getDecks();
+            assertTrue(json.contains("\"name\":\"Renamed\""));
+            assertTrue(json.contains("\"newToday\":[0,0]"));
+
+            try (AnkiCollection reRead = Anki4j.read(anki.export())) {
+                assertEquals("Renamed", reRead.getDeck(1007L).get().getName());
+                assertTrue(reRead.getDecks().size() >= 200);
+                // Properties the model does not know about survive a rewrite
+                reRead.addDeck(new Deck(1001L, "Deck 1"));
+                assertTrue(reRead.getCol().get().getDecks().contains("\"extendNew\":0"));
+            }
+        }
+    }
+
+    @Test
+    public void testTransactions() {
+        try (AnkiCollection anki = Anki4j.create()) {
+            anki.addNote(new Note(1L, null, "Kept\u001fBack", 1L));
+
+            RuntimeException failure = new IllegalStateException("import failed");
+            try {
+                anki.inTransaction(tx -> {
+                    tx.addDeck(new Deck(50L, "Rolled Back"));
+                    tx.addNotes(List.of(new Note(2L, null, "A\u001fB", 1L), new Note(3L, null, "C\u001fD", 1L)));
+                    tx.addCard(new Card(20L, 2L, 50L, 0));
+                    tx.addMedia("rolled.txt", new byte[] { 1 });
+                    Note kept = tx.getNote(1L).get();
+                    kept.setFlds("Changed\u001fBack");
+                    tx.save(kept);
+                    throw failure;
+                });
+                fail("Expected the work to throw");
+            } catch (IllegalStateException e) {
+                assertSame(failure, e);
+            }
+            assertFalse(anki.getDeck(50L).isPresent());
+            assertEquals(1, anki.getNotes().size());
+            assertEquals("Kept\u001fBack", anki.getNotesByIds(1L).get(0).getFlds());
+            assertTrue(anki.getCards().isEmpty());
+            assertFalse(anki.getMediaContent("rolled.txt").isPresent());
+
+            try (AnkiTransaction tx = anki.beginTransaction()) {
+                assertThrows(IllegalStateException.class, anki::beginTransaction);
+                anki.addDeck(new Deck(51L, "Committed"));
+                anki.addNote(new Note(4L, null, "E\u001fF", 1L));
+                tx.commit();
+                assertFalse(tx.isActive());
+            }
+            try (AnkiTransaction tx = anki.beginTransaction()) {
+                anki.addNote(new Note(5L, null, "G\u001fH", 1L));
+            } // closed without commit
+            assertTrue(anki.getNote(4L).isPresent());
+            assertFalse(anki.getNote(5L).isPresent());
+
+            // Only the owning thread may end a transaction; another thread's save waits for it
+            java.util.concurrent.ExecutorService other = java.util.concurrent.Executors.newSingleThreadExecutor();
+            Note elsewhere = anki.getNote(4L).get();
+            try (AnkiTransaction tx = anki.beginTransaction()) {
+                java.util.concurrent.ExecutionException error = assertThrows(
+                        java.util.concurrent.ExecutionException.class, () -> other.submit(tx::commit).get());
+                assertTrue(error.getCause() instanceof IllegalStateException);
+                assertTrue(tx.isActive());
+
+                elsewhere.setFlds("Saved elsewhere\u001fF");
+                java.util.concurrent.Future<?> save = other.submit(() -> anki.save(elsewhere));
+                anki.addNote(new Note(6L, null, "I\u001fJ", 1L));
+                tx.rollback();
+                save.get(10, java.util.concurrent.TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            } finally {
+                other.shutdown();
+            }
+            assertFalse(anki.getNote(6L).isPresent());
+            assertEquals("Saved elsewhere\u001fF", anki.getNotesByIds(4L).get(0).getFlds());
+
+            try (AnkiCollection reRead = Anki4j.read(anki.export())) {
+                assertEquals("Committed", reRead.getDeck(51L).get().getName());
+                assertEquals(2, reRead.getNotes().size());
+            }
+        }
+    }
+
+    private static List<Integer> ords(Note note, AnkiCollection anki) {
+        return anki.getCards().stream().filter(c -> c.getNid() == note.getId()).map(Card::getOrd).sorted()
+                .collect(java.util.stream.Collectors.toList());
+    }
+
+    private static Field field(String name, int ord) {
+        Field field = new Field();
+        field.setName(name);
+        field.setOrd(ord);
+        return field;
+    }
+
+    private static Template template(String qfmt) {
+        Template template = new Template();
+        template.setName("Card");
+        template.setQfmt(qfmt);
+        template.setAfmt("{{FrontSide}}");
+        return template;
+    }
+
+    private static void addScheduledCard(AnkiCollection anki, long id, long deckId, int queue, long due) {
+        Card card = new Card(id, 1L, deckId, 0);
+        card.setQueue(queue);
+        card.setType(queue);
+        card.setDue(due);
+        anki.addCard(card);
+    }
+
+    private static List<Long> ids(List<Card> cards) {
+        return cards.stream().map(Card::getId).collect(java.util.stream.Collectors.toList());
+    }
 }
@@ -9,6 +9,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -133,4 +134,69 @@ public class RendererTest {
         // New behavior: unknown fields return empty string
         assertEquals("", q);
     }
+
+    @Test
+    public void testNestedAndRepeatedSections() {
+        Note partialNote = new Note(4L, "guid4", "Question\u001F", 1L);
+
+        Template tmpl = new Template();
+        tmpl.setQfmt("{{#Front}}[{{#Back}}both{{/Back}}{{^Back}}front only{{/Back}}]{{/Front}}"
+                + "{{#Front}}({{Front}}){{/Front}}");
+
+        assertEquals("[front only](Question)", renderer.renderQuestion(partialNote, model, tmpl));
+        assertEquals("[both](Question)", renderer.renderQuestion(note, model, tmpl));
+    }
+
+    @Test
+    public void testUnbalancedSectionsAreKeptAsText() {
+        Template tmpl = new Template();
+        tmpl.setQfmt("{{#Front}}{{Back}}{{/Back}}");
+
+        assertEquals("{{#Front}}Answer{{/Back}}", renderer.renderQuestion(note, model, tmpl));
+    }
+
+    @Test
+    public void testClozeDeletionsByOrdinal() {
+        Note clozeNote = new Note(5L, "guid5",
+                "{{c1::Paris::city}} is the capital of {{c2::France}}\u001FExtra", 1L);
+        Template tmpl = new Template();
+        tmpl.setQfmt("{{cloze:Front}}");
+        tmpl.setAfmt("{{cloze:Front}}<br>{{Back}}");
+
+        assertEquals("<span class=\"cloze\">[city]</span> is the capital of France",
+                renderer.renderQuestion(clozeNote, model, tmpl, 0));
+        assertEquals("<span class=\"cloze\">Paris</span> is the capital of France<br>Extra",
+                renderer.renderAnswer(clozeNote, model, tmpl, 0));
+        assertEquals("Paris is the capital of <span class=\"cloze\">[...]</span>",
+                renderer.renderQuestion(clozeNote, model, tmpl, 1));
+    }
+
+    @Test
+    public void testNestedClozeIndex() {
+        ClozeIndex index = ClozeIndex.parse("{{c1::outer {{c2::inner}} text}} and {{c3::open");
+
+        assertArrayEquals(new int[] { 1, 2 }, index.getClozeNumbers());
+        assertEquals("<span class=\"cloze\">[...]</span> and {{c3::open", index.render(1, true));
+        assertEquals("outer <span class=\"cloze\">inner</span> text and {{c3::open", index.render(2, false));
+    }
+
+    @Test
+    public void testFieldLookupByOrdinal() {
+        Note shortNote = new Note(6L, "guid6", "Only front", 1L);
+        Template tmpl = new Template();
+        tmpl.setQfmt("{{text:Front}}|{{Back}}|{{^Back}}no back{{/Back}}");
+        tmpl.setAfmt("{{Back}}");
+
+        assertEquals("Only front||no back", renderer.renderQuestion(shortNote, model, tmpl));
+        assertEquals("", renderer.renderAnswer(shortNote, model, tmpl));
+        assertEquals("", renderer.getFieldMap(shortNote, model).get("Back"));
+
+        // Replacing the model's fields invalidates the cached layout
+        Field extra = new Field();
+        extra.setName("Extra");
+        model.setFlds(Arrays.asList(model.getFlds().get(0), model.getFlds().get(1), extra));
+        Note fullNote = new Note(7L, "guid7", "Q\u001FA\u001FE", 1L);
+        tmpl.setQfmt("{{Extra}}");
+        assertEquals("E", renderer.renderQuestion(fullNote, model, tmpl));
+    }
 }